@@ -0,0 +1,43 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Utilidades comunes de los programas de {@code bench}: las opciones
+ * {@code opcion=valor} de la línea de comandos y las comprobaciones de los
+ * programas {@code Comprobacion*}.
+ */
+public class Banco {
+
+  private Banco() {
+  }
+
+  /**
+   * Lee los argumentos {@code opcion=valor}. Cada programa toma los valores con
+   * {@link Map#getOrDefault(Object, Object)}; las listas van separadas por
+   * comas.
+   *
+   * @throws IllegalArgumentException si algún argumento no tiene {@code =}.
+   */
+  public static Map<String, String> leerOpciones(String[] args) {
+    Map<String, String> opciones = new HashMap<>();
+    for (String arg : args) {
+      int igual = arg.indexOf('=');
+      if (igual < 0) {
+        throw new IllegalArgumentException("Opcion invalida (se espera opcion=valor): " + arg);
+      }
+      opciones.put(arg.substring(0, igual), arg.substring(igual + 1));
+    }
+    return opciones;
+  }
+
+  /**
+   * Si la condición no se cumple, imprime el mensaje y termina el programa con
+   * código 1, para que un script note la falla sin leer la salida.
+   */
+  public static void comprobar(boolean condicion, String mensaje) {
+    if (!condicion) {
+      System.out.println(mensaje);
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,168 @@
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import monitor.MetricasDeDisparo;
+import monitor.MetricasDeDisparo.Fase;
+import monitor.MonitorInterface;
+import petri.PoliticaAgenciaVuelo;
+import petri.RedDePetri;
+import simulacion.SimuladorDeEventos;
+
+/**
+ * Barrido de carga de la agencia sin interfaz gráfica. Corre la agencia
+ * completa (con los tiempos de proceso de cada hilo) para cada combinación de
+ * cantidad de clientes, política y cantidad de hilos de cada tipo de proceso, y
+ * escribe una fila CSV por corrida con el tiempo hasta que la red termina, el
+ * throughput y las estadísticas de espera del monitor. Con las filas de un
+ * mismo parámetro variando se arman las curvas de escalado.
+ *
+ * Uso: {@code java BarridoDeCarga [opcion=valor ...]}, con las opciones
+ * <ul>
+ * <li>{@code clientes}: cantidades de clientes (por defecto 186).</li>
+ * <li>{@code politica}: 1 (balanceada) y/o 2 (priorizada).</li>
+ * <li>{@code entrada}, {@code agente1}, {@code agente2},
+ * {@code cancelacion}, {@code confirmacion}, {@code salida}: cantidades de
+ * hilos de cada proceso (por defecto, las de {@link Main}).</li>
+ * <li>{@code motor}: {@code real} (hilos y monitor, con los tiempos reales)
+ * y/o {@code virtual} (el simulador de eventos discretos, sin estadísticas del
+ * monitor).</li>
+ * <li>{@code repeticiones}: corridas de cada combinación.</li>
+ * <li>{@code csv}: archivo de salida (por defecto, la salida estándar).</li>
+ * </ul>
+ * Las listas se separan con comas. Con el motor real cada corrida dura lo que
+ * tarda la agencia en atender a todos los clientes.
+ */
+public class BarridoDeCarga {
+
+  private static final String ENCABEZADO = "motor,clientes,politica,hilos_entrada,hilos_agente1,hilos_agente2,"
+      + "hilos_cancelacion,hilos_confirmacion,hilos_salida,tiempo_ms,disparos,disparos_por_s,clientes_por_s,"
+      + "adquisicion_prom_us,adquisicion_p99_us,espera_condicion_prom_us,espera_condicion_p99_us,"
+      + "espera_alfa_prom_us,espera_alfa_p99_us,eficiencia_despertar";
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    int[] clientes = enteros(opciones.getOrDefault("clientes", "" + ConfiguracionInicial.CLIENTES_POR_DEFECTO));
+    int[] politicas = enteros(opciones.getOrDefault("politica", "1,2"));
+    for (int politica : politicas) {
+      if (!PoliticaAgenciaVuelo.existe(politica)) {
+        System.out.println("Politica inexistente: " + politica);
+        System.out.println("Uso: java BarridoDeCarga [opcion=valor ...], con politica=1 (balanceada) y/o 2 (priorizada)");
+        System.exit(2);
+      }
+    }
+    int[] entrada = enteros(opciones.getOrDefault("entrada", "" + Main.CANTIDAD_HILOS_GEN_CLIENTES));
+    int[] agente1 = enteros(opciones.getOrDefault("agente1", "" + Main.CANTIDAD_HILOS_AGENTE_1));
+    int[] agente2 = enteros(opciones.getOrDefault("agente2", "" + Main.CANTIDAD_HILOS_AGENTE_2));
+    int[] cancelacion = enteros(opciones.getOrDefault("cancelacion", "" + Main.CANTIDAD_HILOS_CANCELACION));
+    int[] confirmacion = enteros(opciones.getOrDefault("confirmacion", "" + Main.CANTIDAD_HILOS_CONFIRMACION));
+    int[] salida = enteros(opciones.getOrDefault("salida", "" + Main.CANTIDAD_HILOS_SALIDA));
+    String[] motores = opciones.getOrDefault("motor", "real").split(",");
+    int repeticiones = Integer.parseInt(opciones.getOrDefault("repeticiones", "1"));
+
+    // Todas las combinaciones de cantidades de hilos
+    List<DotacionDeHilos> dotaciones = new ArrayList<>();
+    for (int e : entrada)
+      for (int a1 : agente1)
+        for (int a2 : agente2)
+          for (int c : cancelacion)
+            for (int cp : confirmacion)
+              for (int s : salida)
+                dotaciones.add(new DotacionDeHilos(e, a1, a2, c, cp, s));
+
+    String archivo = opciones.get("csv");
+    PrintWriter csv = archivo == null ? new PrintWriter(System.out, true)
+        : new PrintWriter(Files.newBufferedWriter(Paths.get(archivo), StandardCharsets.UTF_8));
+    try {
+      csv.println(ENCABEZADO);
+      for (String motor : motores) {
+        for (int cantidad : clientes) {
+          for (int politica : politicas) {
+            for (DotacionDeHilos dotacion : dotaciones) {
+              for (int i = 0; i < repeticiones; i++) {
+                String fila = motor.equals("virtual") ? correrVirtual(cantidad, politica, dotacion)
+                    : correrReal(cantidad, politica, dotacion);
+                csv.println(fila);
+                csv.flush();
+                if (archivo != null) {
+                  System.out.println(fila);
+                }
+              }
+            }
+          }
+        }
+      }
+    } finally {
+      if (archivo != null) {
+        csv.close();
+      }
+    }
+  }
+
+  /** Corre la agencia con hilos reales y devuelve la fila CSV. */
+  private static String correrReal(int clientes, int politica, DotacionDeHilos dotacion)
+      throws InterruptedException {
+    ConfiguracionInicial configuracion = new ConfiguracionInicial(clientes, politica);
+    MonitorInterface monitor = configuracion.getMonitor();
+    MetricasDeDisparo metricas = configuracion.getMetricas();
+    List<Thread> hilos = dotacion.crearHilos(monitor, Thread::new);
+    long inicio = System.nanoTime();
+    for (Thread h : hilos) {
+      h.start();
+    }
+    for (Thread h : hilos) {
+      h.join();
+    }
+    long duracion = System.nanoTime() - inicio;
+    return fila("real", clientes, politica, dotacion, duracion, configuracion.getRedDePetri(), metricas);
+  }
+
+  /** Corre la agencia en el simulador de tiempo virtual y devuelve la fila CSV. */
+  private static String correrVirtual(int clientes, int politica, DotacionDeHilos dotacion) {
+    ConfiguracionInicial configuracion = new ConfiguracionInicial(clientes, politica);
+    SimuladorDeEventos simulador = new SimuladorDeEventos(configuracion.getRedDePetri());
+    dotacion.agregarProcesos(simulador);
+    simulador.ejecutar();
+    return fila("virtual", clientes, politica, dotacion, simulador.getTiempoVirtualNanos(),
+        configuracion.getRedDePetri(), null);
+  }
+
+  private static String fila(String motor, int clientes, int politica, DotacionDeHilos dotacion, long nanos,
+      RedDePetri red, MetricasDeDisparo metricas) {
+    double segundos = nanos / 1e9;
+    long disparos = red.getDiario().tamanio();
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%d,%d,%d,%d,%d,%.1f,%.2f", motor, clientes, politica,
+        dotacion.getEntrada(), dotacion.getAgente1(), dotacion.getAgente2(), dotacion.getCancelacion(),
+        dotacion.getConfirmacion(), dotacion.getSalida(), nanos / 1_000_000L, disparos, disparos / segundos,
+        red.getClientesSalientes() / segundos));
+    for (Fase fase : new Fase[] { Fase.ADQUISICION, Fase.ESPERA_CONDICION, Fase.ESPERA_ALFA }) {
+      if (metricas == null) {
+        sb.append(",,");
+      } else {
+        sb.append(String.format(Locale.ROOT, ",%.1f,%.1f", metricas.getPromedioNanos(fase) / 1e3,
+            metricas.getPercentilNanos(fase, 99) / 1e3));
+      }
+    }
+    sb.append(metricas == null ? "," : String.format(Locale.ROOT, ",%.3f", metricas.getEficienciaDeDespertar()));
+    if (!red.isTermino()) {
+      System.err.println("La corrida se detuvo sin que la red terminara: " + motor + " " + dotacion);
+    }
+    return sb.toString();
+  }
+
+  private static int[] enteros(String lista) {
+    String[] partes = lista.split(",");
+    int[] valores = new int[partes.length];
+    for (int i = 0; i < partes.length; i++) {
+      valores[i] = Integer.parseInt(partes[i].trim());
+    }
+    return valores;
+  }
+}
@@ -0,0 +1,227 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import monitor.EstrategiaDeSincronizacion;
+import monitor.ModoExclusion;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.MonitorSinBloqueo;
+import petri.AlfaYBeta;
+import petri.PoliticaAgenciaVuelo;
+import petri.PoliticaInexistenteException;
+import petri.RedDePetri;
+
+/**
+ * Benchmark de {@link MonitorInterface#fireTransition(int)} bajo contención. En
+ * cada corrida se arma una red nueva, se lanzan los hilos (sin dormir entre
+ * disparos, para medir solo al monitor) y se mide hasta que la red termina.
+ * Informa disparos por segundo (media, mínimo y máximo entre iteraciones) y
+ * percentiles de la latencia de cada llamada a {@code fireTransition}, que
+ * incluye el tiempo que el hilo pasa bloqueado esperando su transición.
+ *
+ * Uso: {@code java BenchmarkMonitor [opcion=valor ...]}, con las opciones
+ * <ul>
+ * <li>{@code redes}: {@code agencia} y/o {@code cadena} (carriles
+ * independientes de transiciones en serie).</li>
+ * <li>{@code monitores}: {@code GLOBAL-JUSTA}, {@code GLOBAL-NO_JUSTA},
+ * {@code GLOBAL-GIRO_Y_ESPERA}, {@code POR_CLUSTER-...} o
+ * {@code SIN_BLOQUEO}.</li>
+ * <li>{@code hilos}: multiplicadores de la cantidad de hilos de {@link Main}
+ * (en la cadena, hilos por transición).</li>
+ * <li>{@code alfa}: {@code cero} (sin ventanas) y/o {@code real} (las de
+ * {@link ConfiguracionInicial}); solo para la agencia.</li>
+ * <li>{@code politica}: 1 (balanceada) y/o 2 (priorizada); solo para la
+ * agencia.</li>
+ * <li>{@code clientes}, {@code iteraciones}, {@code calentamiento}.</li>
+ * </ul>
+ * Las listas se separan con comas.
+ */
+public class BenchmarkMonitor {
+
+  private static final int CARRILES = 4; // carriles de la red cadena
+  private static final int LARGO = 8; // transiciones por carril
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    int clientes = Integer.parseInt(opciones.getOrDefault("clientes", "2000"));
+    int iteraciones = Integer.parseInt(opciones.getOrDefault("iteraciones", "5"));
+    int calentamiento = Integer.parseInt(opciones.getOrDefault("calentamiento", "2"));
+    String[] redes = opciones.getOrDefault("redes", "agencia,cadena").split(",");
+    String[] monitores = opciones.getOrDefault("monitores",
+        "GLOBAL-JUSTA,GLOBAL-NO_JUSTA,GLOBAL-GIRO_Y_ESPERA,POR_CLUSTER-JUSTA,SIN_BLOQUEO").split(",");
+    String[] hilos = opciones.getOrDefault("hilos", "1,2,4").split(",");
+    String[] alfas = opciones.getOrDefault("alfa", "cero").split(",");
+    String[] politicas = opciones.getOrDefault("politica", "1,2").split(",");
+
+    System.out.printf("%-8s %-22s %5s %5s %4s %12s %12s %12s %9s %9s %9s %9s %9s%n", "red", "monitor", "hilos",
+        "alfa", "pol", "disparos/s", "min", "max", "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)");
+    for (String red : redes) {
+      boolean agencia = red.equals("agencia");
+      for (String monitor : monitores) {
+        for (String k : hilos) {
+          for (String alfa : agencia ? alfas : new String[] { "-" }) {
+            for (String politica : agencia ? politicas : new String[] { "-" }) {
+              Escenario escenario = new Escenario(red, monitor, Integer.parseInt(k), alfa, politica, clientes);
+              for (int i = 0; i < calentamiento; i++) {
+                escenario.correr();
+              }
+              double[] tasas = new double[iteraciones];
+              List<Latencias> latencias = new ArrayList<>();
+              for (int i = 0; i < iteraciones; i++) {
+                tasas[i] = escenario.correr();
+                latencias.addAll(escenario.latencias);
+              }
+              imprimir(escenario, tasas, Latencias.unir(latencias));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private static void imprimir(Escenario e, double[] tasas, long[] latencias) {
+    double suma = 0, min = Double.MAX_VALUE, max = 0;
+    for (double t : tasas) {
+      suma += t;
+      min = Math.min(min, t);
+      max = Math.max(max, t);
+    }
+    System.out.printf("%-8s %-22s %5s %5s %4s %12.0f %12.0f %12.0f %9.1f %9.1f %9.1f %9.1f %9.1f%n", e.red,
+        e.monitor, "x" + e.multiplicador, e.alfa, e.politica, suma / tasas.length, min, max,
+        Latencias.percentil(latencias, 50) / 1e3, Latencias.percentil(latencias, 90) / 1e3,
+        Latencias.percentil(latencias, 99) / 1e3, Latencias.percentil(latencias, 99.9) / 1e3,
+        Latencias.percentil(latencias, 100) / 1e3);
+  }
+
+  /** Una configuración del benchmark; cada corrida arma red y monitor nuevos. */
+  private static class Escenario {
+    final String red, monitor, alfa, politica;
+    final int multiplicador, clientes;
+    List<Latencias> latencias;
+
+    Escenario(String red, String monitor, int multiplicador, String alfa, String politica, int clientes) {
+      this.red = red;
+      this.monitor = monitor;
+      this.multiplicador = multiplicador;
+      this.alfa = alfa;
+      this.politica = politica;
+      this.clientes = clientes;
+    }
+
+    /** Ejecuta una corrida completa y devuelve los disparos por segundo. */
+    double correr() throws Exception {
+      RedDePetri redDePetri;
+      List<int[]> secuencias = new ArrayList<>(); // transiciones que dispara cada hilo
+      if (red.equals("agencia")) {
+        redDePetri = new ConfiguracionInicial(clientes).getRedDePetri();
+        redDePetri.getPolitica().setPolitica(Integer.parseInt(politica));
+        if (alfa.equals("cero")) {
+          for (AlfaYBeta ventana : redDePetri.getAlfayBeta()) {
+            if (ventana.tieneRestriccion())
+              ventana.setAlfaYBeta(0, ventana.getBeta());
+          }
+        }
+        for (int i = 0; i < multiplicador; i++) {
+          agregar(secuencias, Main.CANTIDAD_HILOS_GEN_CLIENTES, 0, 1);
+          agregar(secuencias, Main.CANTIDAD_HILOS_AGENTE_1, 2, 5);
+          agregar(secuencias, Main.CANTIDAD_HILOS_AGENTE_2, 3, 4);
+          agregar(secuencias, Main.CANTIDAD_HILOS_CANCELACION, 7, 8);
+          agregar(secuencias, Main.CANTIDAD_HILOS_CONFIRMACION, 6, 9, 10);
+          agregar(secuencias, Main.CANTIDAD_HILOS_SALIDA, 11);
+        }
+      } else if (red.equals("cadena")) {
+        redDePetri = crearCadena(clientes);
+        for (int t = 0; t < CARRILES * LARGO; t++) {
+          agregar(secuencias, multiplicador, t);
+        }
+      } else {
+        throw new IllegalArgumentException("Red desconocida: " + red);
+      }
+
+      MonitorInterface m = crearMonitor(redDePetri);
+      latencias = new ArrayList<>();
+      CountDownLatch largada = new CountDownLatch(1);
+      List<Thread> hilos = new ArrayList<>();
+      for (int[] secuencia : secuencias) {
+        Latencias registro = new Latencias();
+        latencias.add(registro);
+        hilos.add(new Thread(() -> {
+          try {
+            largada.await();
+          } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+          }
+          while (true) {
+            for (int t : secuencia) {
+              long inicio = System.nanoTime();
+              boolean disparada = m.fireTransition(t);
+              if (!disparada) {
+                return;
+              }
+              registro.registrar(System.nanoTime() - inicio);
+            }
+          }
+        }));
+      }
+      for (Thread h : hilos) {
+        h.start();
+      }
+      long inicio = System.nanoTime();
+      largada.countDown();
+      for (Thread h : hilos) {
+        h.join();
+      }
+      long duracion = System.nanoTime() - inicio;
+      return redDePetri.getDiario().tamanio() * 1e9 / duracion;
+    }
+
+    private MonitorInterface crearMonitor(RedDePetri redDePetri) {
+      if (monitor.equals("SIN_BLOQUEO")) {
+        return new MonitorSinBloqueo(redDePetri);
+      }
+      String[] partes = monitor.split("-", 2);
+      EstrategiaDeSincronizacion sincronizacion;
+      switch (partes[1]) {
+        case "JUSTA":
+          sincronizacion = EstrategiaDeSincronizacion.JUSTA;
+          break;
+        case "NO_JUSTA":
+          sincronizacion = EstrategiaDeSincronizacion.NO_JUSTA;
+          break;
+        case "GIRO_Y_ESPERA":
+          sincronizacion = EstrategiaDeSincronizacion.GIRO_Y_ESPERA;
+          break;
+        default:
+          throw new IllegalArgumentException("Sincronizacion desconocida: " + partes[1]);
+      }
+      return Monitor.crear(redDePetri, ModoExclusion.valueOf(partes[0]), sincronizacion);
+    }
+
+    private static void agregar(List<int[]> secuencias, int cantidad, int... transiciones) {
+      for (int i = 0; i < cantidad; i++) {
+        secuencias.add(transiciones);
+      }
+    }
+
+    // Carriles independientes: p0 (con los clientes) -> t0 -> p1 -> ... -> pLARGO
+    private static RedDePetri crearCadena(int clientes) throws PoliticaInexistenteException {
+      int lugares = CARRILES * (LARGO + 1);
+      int[][] matriz = new int[lugares][CARRILES * LARGO];
+      int[] marcado = new int[lugares];
+      for (int c = 0; c < CARRILES; c++) {
+        marcado[c * (LARGO + 1)] = clientes;
+        for (int i = 0; i < LARGO; i++) {
+          matriz[c * (LARGO + 1) + i][c * LARGO + i] = -1;
+          matriz[c * (LARGO + 1) + i + 1][c * LARGO + i] = 1;
+        }
+      }
+      ArrayList<AlfaYBeta> ventanas = new ArrayList<>();
+      for (int t = 0; t < CARRILES * LARGO; t++) {
+        ventanas.add(new AlfaYBeta());
+      }
+      return new RedDePetri(matriz, marcado, new PoliticaAgenciaVuelo(1), ventanas);
+    }
+  }
+}
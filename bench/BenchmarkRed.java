@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import petri.MatrizIncidenciaDispersa;
+import petri.RedDePetri;
+
+/**
+ * Microbenchmarks de las operaciones de {@link RedDePetri} sobre redes
+ * sintéticas de {@link GeneradorDeRedes}, de un solo hilo y sin monitor. Para
+ * cada tipo y tamaño de red informa el tiempo de construcción y los
+ * nanosegundos por operación de {@code sensibilizado}, {@code getSensibilizadas},
+ * {@code dispararTransicion} (incluye elegir una transición sensibilizada) y
+ * {@code consultarPolitica}, con candidatos en lista y en bitset (la mitad de
+ * los conjuntos de candidatos tiene conflicto).
+ *
+ * Uso: {@code java BenchmarkRed [opcion=valor ...]}, con las opciones
+ * {@code tipos} (de {@link GeneradorDeRedes.Tipo}), {@code lugares},
+ * {@code tiempo} (milisegundos de medición por operación) y {@code semilla}.
+ * Las listas se separan con comas.
+ */
+public class BenchmarkRed {
+
+  private static final int MUESTRAS = 1 << 10; // indices y candidatos precalculados (potencia de 2)
+  private static final int CANDIDATOS = 4;
+  private static volatile long sumidero; // evita que el JIT descarte los resultados
+
+  /** Un lote de operaciones; devuelve algo derivado de los resultados. */
+  private interface Lote {
+    long ejecutar(int veces);
+  }
+
+  public static void main(String[] args) {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    String[] tipos = opciones.getOrDefault("tipos", "CADENA,FORK_JOIN,CONFLICTOS,ALEATORIA,AGENCIA").split(",");
+    String[] lugares = opciones.getOrDefault("lugares", "10,100,1000,10000,100000").split(",");
+    long tiempo = Long.parseLong(opciones.getOrDefault("tiempo", "300"));
+    long semilla = Long.parseLong(opciones.getOrDefault("semilla", "1"));
+
+    System.out.printf("%-10s %7s %7s %7s %9s %13s %13s %13s %13s %13s%n", "tipo", "lugares", "trans", "arcos",
+        "armar(ms)", "sensib(ns)", "getSens(ns)", "disparar(ns)", "polLista(ns)", "polBits(ns)");
+    for (String tipo : tipos) {
+      for (String cantidad : lugares) {
+        medirRed(GeneradorDeRedes.Tipo.valueOf(tipo), Integer.parseInt(cantidad), tiempo, semilla);
+      }
+    }
+  }
+
+  private static void medirRed(GeneradorDeRedes.Tipo tipo, int lugares, long tiempo, long semilla) {
+    long inicio = System.nanoTime();
+    RedDePetri red = GeneradorDeRedes.generar(tipo, lugares, semilla);
+    double armar = (System.nanoTime() - inicio) / 1e6;
+    MatrizIncidenciaDispersa matriz = red.getMatrizDispersa();
+    int transiciones = matriz.getCantidadTransiciones();
+    SplittableRandom azar = new SplittableRandom(semilla);
+
+    int[] indices = new int[MUESTRAS];
+    for (int i = 0; i < MUESTRAS; i++) {
+      indices[i] = azar.nextInt(transiciones);
+    }
+    double sensibilizado = medir(tiempo, veces -> {
+      long cuenta = 0;
+      for (int i = 0; i < veces; i++) {
+        if (red.sensibilizado(indices[i & (MUESTRAS - 1)]))
+          cuenta++;
+      }
+      return cuenta;
+    });
+    double getSensibilizadas = medir(tiempo, veces -> {
+      long suma = 0;
+      for (int i = 0; i < veces; i++) {
+        suma += red.getSensibilizadas().length;
+      }
+      return suma;
+    });
+
+    int[] palabraInicial = new int[MUESTRAS];
+    int palabras = (transiciones + 63) >>> 6;
+    for (int i = 0; i < MUESTRAS; i++) {
+      palabraInicial[i] = azar.nextInt(palabras);
+    }
+    double disparar = medir(tiempo, veces -> {
+      long[] sensibilizadas = red.getPalabrasSensibilizadas();
+      for (int i = 0; i < veces; i++) {
+        // Primera transicion sensibilizada a partir de una palabra al azar
+        int w = palabraInicial[i & (MUESTRAS - 1)];
+        while (sensibilizadas[w] == 0) {
+          w = w + 1 == palabras ? 0 : w + 1;
+        }
+        red.dispararTransicion((w << 6) + Long.numberOfTrailingZeros(sensibilizadas[w]));
+      }
+      return red.getDiario().tamanio();
+    });
+
+    List<List<Integer>> listas = new ArrayList<>();
+    long[][] bitsets = new long[MUESTRAS][];
+    for (int i = 0; i < MUESTRAS; i++) {
+      List<Integer> candidatos = new ArrayList<>();
+      if (i % 2 == 0) {
+        // Consumidoras de un mismo lugar: hay conflicto si son dos o mas
+        int p = azar.nextInt(matriz.getCantidadLugares());
+        for (int j = matriz.inicioFila(p); j < matriz.finFila(p) && candidatos.size() < CANDIDATOS; j++) {
+          if (matriz.getValoresPorFila()[j] < 0)
+            candidatos.add(matriz.getTransicionesDeArcos()[j]);
+        }
+      }
+      while (candidatos.size() < CANDIDATOS && candidatos.size() < transiciones) {
+        int t = azar.nextInt(transiciones);
+        if (!candidatos.contains(t))
+          candidatos.add(t);
+      }
+      listas.add(candidatos);
+      bitsets[i] = new long[palabras];
+      for (int t : candidatos) {
+        bitsets[i][t >>> 6] |= 1L << t;
+      }
+    }
+    double politicaLista = medir(tiempo, veces -> {
+      long suma = 0;
+      for (int i = 0; i < veces; i++) {
+        suma += red.consultarPolitica(listas.get(i & (MUESTRAS - 1)));
+      }
+      return suma;
+    });
+    double politicaBits = medir(tiempo, veces -> {
+      long suma = 0;
+      for (int i = 0; i < veces; i++) {
+        suma += red.consultarPolitica(bitsets[i & (MUESTRAS - 1)]);
+      }
+      return suma;
+    });
+
+    System.out.printf("%-10s %7d %7d %7d %9.1f %13.1f %13.1f %13.1f %13.1f %13.1f%n", tipo,
+        matriz.getCantidadLugares(), transiciones, matriz.getCantidadArcos(), armar, sensibilizado,
+        getSensibilizadas, disparar, politicaLista, politicaBits);
+  }
+
+  /**
+   * Ejecuta lotes crecientes durante la mitad del tiempo (calentamiento) y
+   * luego mide durante el tiempo indicado.
+   *
+   * @return nanosegundos por operación.
+   */
+  private static double medir(long tiempoMs, Lote lote) {
+    long limite = System.nanoTime() + tiempoMs * 500_000L;
+    int veces = 64;
+    while (System.nanoTime() < limite) {
+      sumidero += lote.ejecutar(veces);
+      veces = Math.min(veces * 2, 1 << 20);
+    }
+    long operaciones = 0;
+    long inicio = System.nanoTime();
+    limite = inicio + tiempoMs * 1_000_000L;
+    long ahora;
+    do {
+      sumidero += lote.ejecutar(veces);
+      operaciones += veces;
+      ahora = System.nanoTime();
+    } while (ahora < limite);
+    return (double) (ahora - inicio) / operaciones;
+  }
+}
@@ -0,0 +1,152 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import petri.MatrizIncidenciaDispersa;
+import petri.MotorDeSensibilizado;
+import petri.RedDePetri;
+
+/**
+ * Prueba diferencial de {@link MotorDeSensibilizado} contra el motor anterior,
+ * que reevaluaba cada transición afectada recorriendo su columna. Sobre redes
+ * sintéticas de {@link GeneradorDeRedes} dispara transiciones sensibilizadas
+ * elegidas al azar en los dos motores y después de cada disparo compara el
+ * marcado, el bitset de sensibilizadas y {@code ningunaSensibilizada}.
+ *
+ * Uso: {@code java ComparacionDeMotores [opcion=valor ...]}, con las opciones
+ * {@code tipos} (de {@link GeneradorDeRedes.Tipo}), {@code lugares},
+ * {@code semillas} (cantidad de redes de cada tipo y tamaño) y {@code disparos}
+ * (por red). Las listas se separan con comas.
+ */
+public class ComparacionDeMotores {
+
+  public static void main(String[] args) {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    String[] tipos = opciones.getOrDefault("tipos", "CADENA,FORK_JOIN,CONFLICTOS,ALEATORIA,AGENCIA").split(",");
+    String[] lugares = opciones.getOrDefault("lugares", "10,100,1000").split(",");
+    int semillas = Integer.parseInt(opciones.getOrDefault("semillas", "5"));
+    int disparos = Integer.parseInt(opciones.getOrDefault("disparos", "20000"));
+
+    long total = 0;
+    for (String tipo : tipos) {
+      for (String cantidad : lugares) {
+        for (long semilla = 1; semilla <= semillas; semilla++) {
+          RedDePetri red = GeneradorDeRedes.generar(GeneradorDeRedes.Tipo.valueOf(tipo), Integer.parseInt(cantidad),
+              semilla);
+          total += comparar(red, disparos, new SplittableRandom(semilla),
+              tipo + " con " + cantidad + " lugares y semilla " + semilla);
+        }
+      }
+    }
+    System.out.println("OK: " + total + " disparos iguales en los dos motores");
+  }
+
+  /** Dispara en los dos motores y devuelve la cantidad de disparos comparados. */
+  private static long comparar(RedDePetri red, int disparos, SplittableRandom azar, String nombre) {
+    MatrizIncidenciaDispersa matriz = red.getMatrizDispersa();
+    int[] marcadoNuevo = red.getMarcado().clone();
+    int[] marcadoAnterior = red.getMarcado().clone();
+    MotorDeSensibilizado nuevo = new MotorDeSensibilizado(matriz, marcadoNuevo);
+    MotorPorColumnas anterior = new MotorPorColumnas(matriz, marcadoAnterior);
+    int transiciones = matriz.getCantidadTransiciones();
+    int[] sensibilizadas = new int[transiciones];
+
+    for (int i = 0; i < disparos; i++) {
+      Banco.comprobar(Arrays.equals(marcadoNuevo, marcadoAnterior)
+          && Arrays.equals(nuevo.getPalabrasSensibilizadas(), anterior.getPalabrasSensibilizadas())
+          && nuevo.ningunaSensibilizada() == anterior.ningunaSensibilizada(),
+          "Los motores difieren en " + nombre + " despues de " + i + " disparos.");
+      int cantidad = 0;
+      for (int t = 0; t < transiciones; t++) {
+        if (nuevo.sensibilizado(t))
+          sensibilizadas[cantidad++] = t;
+      }
+      if (cantidad == 0)
+        return i;
+      int t = sensibilizadas[azar.nextInt(cantidad)];
+      nuevo.disparar(t);
+      anterior.disparar(t);
+    }
+    return disparos;
+  }
+
+  /**
+   * El motor anterior: al disparar marca las transiciones que consumen de los
+   * lugares modificados y reevalúa cada una recorriendo su columna entera.
+   */
+  private static final class MotorPorColumnas {
+
+    private final int[] marcado;
+    private final MatrizIncidenciaDispersa matriz;
+    private final int[] lugarDeArco;
+    private final int[] valorColumna;
+    private final int[] transicionDeArco;
+    private final int[] valorFila;
+    private final long[] sensibilizadas;
+    private int cantidadSensibilizadas;
+    private final int[] revisada; // ultima pasada en la que se reevaluo cada transicion
+    private int pasada;
+
+    MotorPorColumnas(MatrizIncidenciaDispersa matriz, int[] marcado) {
+      this.matriz = matriz;
+      this.marcado = marcado;
+      this.lugarDeArco = matriz.getLugaresDeArcos();
+      this.valorColumna = matriz.getValoresPorColumna();
+      this.transicionDeArco = matriz.getTransicionesDeArcos();
+      this.valorFila = matriz.getValoresPorFila();
+      int cantidadTransiciones = matriz.getCantidadTransiciones();
+      sensibilizadas = new long[(cantidadTransiciones + 63) >>> 6];
+      revisada = new int[cantidadTransiciones];
+      for (int t = 0; t < cantidadTransiciones; t++)
+        actualizar(t);
+    }
+
+    boolean ningunaSensibilizada() {
+      return cantidadSensibilizadas == 0;
+    }
+
+    long[] getPalabrasSensibilizadas() {
+      return sensibilizadas;
+    }
+
+    void disparar(int t) {
+      int inicio = matriz.inicioColumna(t);
+      int fin = matriz.finColumna(t);
+      for (int i = inicio; i < fin; i++)
+        marcado[lugarDeArco[i]] += valorColumna[i];
+      if (++pasada == 0) { // desborde del contador de pasadas
+        Arrays.fill(revisada, 0);
+        pasada = 1;
+      }
+      for (int i = inicio; i < fin; i++) {
+        int p = lugarDeArco[i];
+        for (int j = matriz.inicioFila(p); j < matriz.finFila(p); j++) {
+          int afectada = transicionDeArco[j];
+          if (valorFila[j] < 0 && revisada[afectada] != pasada) {
+            revisada[afectada] = pasada;
+            actualizar(afectada);
+          }
+        }
+      }
+    }
+
+    private void actualizar(int t) {
+      boolean habilitada = true;
+      for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+        if (marcado[lugarDeArco[i]] + valorColumna[i] < 0) {
+          habilitada = false;
+          break;
+        }
+      }
+      long mascara = 1L << t;
+      boolean estaba = (sensibilizadas[t >>> 6] & mascara) != 0;
+      if (habilitada && !estaba) {
+        sensibilizadas[t >>> 6] |= mascara;
+        cantidadSensibilizadas++;
+      } else if (!habilitada && estaba) {
+        sensibilizadas[t >>> 6] &= ~mascara;
+        cantidadSensibilizadas--;
+      }
+    }
+  }
+}
@@ -0,0 +1,155 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import petri.InstantaneaDeMarcado;
+import petri.RedDePetri;
+
+/**
+ * Comprueba el seqlock de {@link RedDePetri#getInstantanea(InstantaneaDeMarcado)}.
+ * Un hilo dispara transiciones sensibilizadas al azar de la red de la agencia,
+ * con una pausa corta entre disparos (como la que deja el monitor entre uno y
+ * otro), mientras otros hilos toman instantáneas sin parar y guardan cada una
+ * distinta de la anterior. Cada instantánea tiene que tener la versión igual a
+ * la cantidad de disparos, un instante de último disparo solo si hubo alguno,
+ * y no retroceder respecto de la anterior del mismo lector. Al terminar se
+ * repite la misma secuencia en un solo hilo y cada instantánea tiene que
+ * coincidir, en marcado y clientes salientes, con el estado después de sus
+ * disparos.
+ *
+ * Uso: {@code java ComprobacionDeInstantaneas [opcion=valor ...]}, con las
+ * opciones {@code clientes} (de la red de la agencia), {@code lectores},
+ * {@code pausa} (vueltas de espera activa entre disparos; con 0 el que dispara
+ * casi no deja copiar a los lectores) y {@code semilla}.
+ */
+public class ComprobacionDeInstantaneas {
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    int clientes = Integer.parseInt(opciones.getOrDefault("clientes", "20000"));
+    int cantidadLectores = Integer.parseInt(opciones.getOrDefault("lectores", "2"));
+    int pausa = Integer.parseInt(opciones.getOrDefault("pausa", "200"));
+    long semilla = Long.parseLong(opciones.getOrDefault("semilla", "1"));
+
+    RedDePetri red = new ConfiguracionInicial(clientes).getRedDePetri();
+    Lector[] lectores = new Lector[cantidadLectores];
+    Thread[] hilos = new Thread[cantidadLectores];
+    for (int i = 0; i < cantidadLectores; i++) {
+      lectores[i] = new Lector(red);
+      hilos[i] = new Thread(lectores[i]);
+      hilos[i].start();
+    }
+    long disparos = disparar(red, new SplittableRandom(semilla), -1, pausa);
+    for (Lector lector : lectores)
+      lector.terminar = true;
+    for (Thread hilo : hilos)
+      hilo.join();
+
+    // La misma secuencia en un solo hilo, comparando cada instantanea guardada
+    RedDePetri repeticion = new ConfiguracionInicial(clientes).getRedDePetri();
+    SplittableRandom azar = new SplittableRandom(semilla);
+    int[] siguiente = new int[cantidadLectores];
+    long comparadas = 0;
+    for (long hechos = 0; hechos <= disparos; hechos++) {
+      for (int i = 0; i < cantidadLectores; i++) {
+        Lector lector = lectores[i];
+        while (siguiente[i] < lector.cantidad && lector.disparos[siguiente[i]] == hechos) {
+          int k = siguiente[i]++;
+          Banco.comprobar(Arrays.equals(lector.marcado(k), repeticion.getMarcado())
+              && lector.clientesSalientes[k] == repeticion.getClientesSalientes(), "La instantanea del lector " + i
+                  + " con " + hechos + " disparos no coincide con la repeticion: "
+                  + Arrays.toString(lector.marcado(k)) + " en lugar de " + Arrays.toString(repeticion.getMarcado()));
+          comparadas++;
+        }
+      }
+      if (hechos < disparos)
+        disparar(repeticion, azar, 1, 0);
+    }
+    for (int i = 0; i < cantidadLectores; i++) {
+      Banco.comprobar(siguiente[i] == lectores[i].cantidad, "Quedaron instantaneas del lector " + i + " sin comparar");
+    }
+    System.out.println("OK: " + disparos + " disparos, " + comparadas + " instantaneas distintas de "
+        + cantidadLectores + " lectores comparadas");
+  }
+
+  /**
+   * Dispara transiciones sensibilizadas al azar hasta que no quede ninguna o
+   * hasta {@code maximo} si no es negativo, esperando {@code pausa} vueltas
+   * después de cada una, y devuelve cuántas disparó.
+   */
+  private static long disparar(RedDePetri red, SplittableRandom azar, long maximo, int pausa) {
+    int transiciones = red.getCantidadDeTransiciones();
+    int[] sensibilizadas = new int[transiciones];
+    long hechos = 0;
+    while (maximo < 0 || hechos < maximo) {
+      int n = 0;
+      for (int t = 0; t < transiciones; t++) {
+        if (red.sensibilizado(t))
+          sensibilizadas[n++] = t;
+      }
+      if (n == 0)
+        break;
+      red.dispararTransicion(sensibilizadas[azar.nextInt(n)]);
+      hechos++;
+      for (int i = 0; i < pausa; i++)
+        Thread.onSpinWait();
+    }
+    return hechos;
+  }
+
+  /** Toma instantáneas hasta que le avisen y guarda las que cambiaron. */
+  private static final class Lector implements Runnable {
+
+    private final RedDePetri red;
+    private final int lugares;
+    volatile boolean terminar;
+    int cantidad;
+    long[] disparos = new long[1024];
+    int[] clientesSalientes = new int[1024];
+    int[] marcados;
+
+    Lector(RedDePetri red) {
+      this.red = red;
+      this.lugares = red.getMarcado().length;
+      this.marcados = new int[disparos.length * lugares];
+    }
+
+    int[] marcado(int k) {
+      return Arrays.copyOfRange(marcados, k * lugares, (k + 1) * lugares);
+    }
+
+    @Override
+    public void run() {
+      InstantaneaDeMarcado instantanea = new InstantaneaDeMarcado(lugares);
+      long instanteAnterior = 0;
+      boolean ultima = false;
+      while (!ultima) {
+        ultima = terminar; // una pasada mas despues del aviso, con el estado final
+        red.getInstantanea(instantanea);
+        long hechos = instantanea.getDisparos();
+        long instante = instantanea.getInstanteNanos();
+        Banco.comprobar(instantanea.getVersion() == hechos,
+            "Version " + instantanea.getVersion() + " con " + hechos + " disparos");
+        Banco.comprobar((instante == 0) == (hechos == 0), "Instante " + instante + " con " + hechos + " disparos");
+        long anterior = cantidad == 0 ? -1 : disparos[cantidad - 1];
+        Banco.comprobar(hechos >= anterior,
+            "La instantanea retrocedio de " + anterior + " a " + hechos + " disparos");
+        if (hechos == anterior)
+          continue;
+        Banco.comprobar(anterior <= 0 || instante - instanteAnterior >= 0,
+            "El instante retrocedio con " + hechos + " disparos");
+        instanteAnterior = instante;
+        if (cantidad == disparos.length) {
+          disparos = Arrays.copyOf(disparos, 2 * cantidad);
+          clientesSalientes = Arrays.copyOf(clientesSalientes, 2 * cantidad);
+          marcados = Arrays.copyOf(marcados, 2 * cantidad * lugares);
+        }
+        disparos[cantidad] = hechos;
+        clientesSalientes[cantidad] = instantanea.getClientesSalientes();
+        for (int p = 0; p < lugares; p++)
+          marcados[cantidad * lugares + p] = instantanea.getTokens(p);
+        cantidad++;
+      }
+    }
+  }
+}
@@ -0,0 +1,99 @@
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import petri.InvariantesDeRed;
+import petri.RedDePetri;
+
+/**
+ * Comprueba {@link InvariantesDeRed} sobre la red de la agencia contra sus
+ * invariantes conocidos: los cuatro T-invariantes del script de Python
+ * ({@code PetriFlightAnalyzer.py}), con sus secuencias de disparo, y los cinco
+ * P-invariantes con sus constantes. Después dispara transiciones
+ * sensibilizadas al azar y comprueba que cada marcado conserve los
+ * P-invariantes.
+ *
+ * Uso: {@code java ComprobacionDeInvariantes [opcion=valor ...]}, con las
+ * opciones {@code clientes} (lista de marcados iniciales de p0, que no cambian
+ * los invariantes), {@code disparos} (por red) y {@code semilla}.
+ */
+public class ComprobacionDeInvariantes {
+
+  // Secuencias de los T-invariantes, como las lista el script de Python
+  private static final String[] SECUENCIAS = { "T0T1T3T4T7T8T11", "T0T1T3T4T6T9T10T11", "T0T1T2T5T7T8T11",
+      "T0T1T2T5T6T9T10T11" };
+  private static final String[] INVARIANTES_P = { "m1 + m2 = 1", "m2 + m3 + m4 = 5", "m5 + m6 = 1", "m7 + m8 = 1",
+      "m10 + m11 + m12 + m13 = 1" };
+
+  public static void main(String[] args) {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    String[] clientes = opciones.getOrDefault("clientes", "1,186,5000").split(",");
+    int disparos = Integer.parseInt(opciones.getOrDefault("disparos", "100000"));
+    long semilla = Long.parseLong(opciones.getOrDefault("semilla", "1"));
+
+    for (String cantidad : clientes) {
+      ConfiguracionInicial configuracion = new ConfiguracionInicial(Integer.parseInt(cantidad));
+      InvariantesDeRed invariantes = configuracion.getInvariantes();
+      comprobarInvariantesT(invariantes);
+      comprobarInvariantesP(invariantes);
+      long hechos = comprobarMarcados(configuracion.getRedDePetri(), invariantes, disparos,
+          new SplittableRandom(semilla));
+      System.out.println("OK con " + cantidad + " clientes: " + invariantes.getCantidadInvariantesT()
+          + " T-invariantes, " + invariantes.getCantidadInvariantesP() + " P-invariantes, " + hechos
+          + " marcados comprobados");
+    }
+  }
+
+  private static void comprobarInvariantesT(InvariantesDeRed invariantes) {
+    int[][] porTransicion = invariantes.getInvariantesT();
+    int[][] secuencias = invariantes.getSecuenciasDeDisparo();
+    Banco.comprobar(porTransicion.length == SECUENCIAS.length,
+        "Se esperaban " + SECUENCIAS.length + " T-invariantes y hay " + porTransicion.length);
+    Set<String> esperadas = new HashSet<>(Arrays.asList(SECUENCIAS));
+    Set<String> calculadas = new HashSet<>();
+    for (int i = 0; i < secuencias.length; i++) {
+      StringBuilder texto = new StringBuilder();
+      int[] veces = new int[porTransicion[i].length];
+      for (int t : secuencias[i]) {
+        texto.append('T').append(t);
+        veces[t]++;
+      }
+      Banco.comprobar(Arrays.equals(veces, porTransicion[i]), "La secuencia " + texto + " no dispara su T-invariante "
+          + Arrays.toString(porTransicion[i]));
+      calculadas.add(texto.toString());
+    }
+    Banco.comprobar(calculadas.equals(esperadas), "T-invariantes " + calculadas + " en lugar de " + esperadas);
+  }
+
+  private static void comprobarInvariantesP(InvariantesDeRed invariantes) {
+    Set<String> calculados = new HashSet<>();
+    for (int i = 0; i < invariantes.getCantidadInvariantesP(); i++) {
+      calculados.add(invariantes.describirInvarianteP(i));
+    }
+    Set<String> esperados = new HashSet<>(Arrays.asList(INVARIANTES_P));
+    Banco.comprobar(calculados.equals(esperados), "P-invariantes " + calculados + " en lugar de " + esperados);
+  }
+
+  /** Dispara al azar y devuelve la cantidad de marcados comprobados. */
+  private static long comprobarMarcados(RedDePetri red, InvariantesDeRed invariantes, int disparos,
+      SplittableRandom azar) {
+    int transiciones = red.getCantidadDeTransiciones();
+    int[] sensibilizadas = new int[transiciones];
+    for (int i = 0; i < disparos; i++) {
+      int incumplido = invariantes.primerInvariantePIncumplido(red.getMarcado());
+      Banco.comprobar(incumplido < 0, "Despues de " + i + " disparos el marcado " + Arrays.toString(red.getMarcado())
+          + " no cumple " + (incumplido < 0 ? "" : invariantes.describirInvarianteP(incumplido)));
+      int cantidad = 0;
+      for (int t = 0; t < transiciones; t++) {
+        if (red.sensibilizado(t))
+          sensibilizadas[cantidad++] = t;
+      }
+      if (cantidad == 0)
+        return i + 1;
+      red.dispararTransicion(sensibilizadas[azar.nextInt(cantidad)]);
+    }
+    return disparos;
+  }
+}
@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import monitor.EstrategiaDeSincronizacion;
+import monitor.ModoExclusion;
+import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.MonitorSinBloqueo;
+import petri.AlfaYBeta;
+import petri.RedDePetri;
+
+/**
+ * Comprueba que {@link MonitorSinBloqueo} y {@link Monitor} (global y por
+ * clusters) lleven la red de la agencia al mismo final. Para cada monitor,
+ * política y cantidad de hilos corre la agencia completa con hilos que
+ * disparan sin dormir, y comprueba que la secuencia sea válida según el
+ * verificador en línea, que el marcado final sea el mismo que con
+ * {@code Monitor} global y que los disparos por transición coincidan: iguales
+ * en las transiciones que no dependen de la política y, en cada conflicto, la
+ * misma suma con cada rama completa hasta la salida. El reparto de cada
+ * conflicto depende también de qué hilos estén esperando cuando se resuelve,
+ * así que se compara con tolerancia: la media de la primera rama con
+ * {@code MonitorSinBloqueo} no puede alejarse de la de {@code Monitor} global
+ * más que {@code tolerancia} por la cantidad de clientes. Se informa el rango
+ * que dejó cada monitor.
+ *
+ * Uso: {@code java ComprobacionDeMonitores [opcion=valor ...]}, con las opciones
+ * {@code clientes}, {@code hilos} (multiplicadores de los hilos de
+ * {@link Main}), {@code politica} (1 y/o 2), {@code alfa} ({@code cero} o
+ * {@code real}), {@code repeticiones} y {@code tolerancia} (fracción de los
+ * clientes). Las listas se separan con comas.
+ */
+public class ComprobacionDeMonitores {
+
+  private static final String[] MONITORES = { "GLOBAL", "POR_CLUSTER", "SIN_BLOQUEO" };
+  private static final int[][] CONFLICTOS = { { 2, 3 }, { 6, 7 } };
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    int clientes = Integer.parseInt(opciones.getOrDefault("clientes", "2000"));
+    String[] hilos = opciones.getOrDefault("hilos", "1,2,4").split(",");
+    String[] politicas = opciones.getOrDefault("politica", "1,2").split(",");
+    boolean alfaReal = opciones.getOrDefault("alfa", "cero").equals("real");
+    int repeticiones = Integer.parseInt(opciones.getOrDefault("repeticiones", "3"));
+    double tolerancia = Double.parseDouble(opciones.getOrDefault("tolerancia", "0.3"));
+
+    for (String politica : politicas) {
+      for (String k : hilos) {
+        int[] marcadoEsperado = null;
+        Map<String, long[]> repartos = new HashMap<>(); // minimo, maximo y suma de T2 y de T6 por monitor
+        for (int r = 0; r < repeticiones; r++) {
+          for (String monitor : MONITORES) {
+            ConfiguracionInicial configuracion = new ConfiguracionInicial(clientes, Integer.parseInt(politica));
+            RedDePetri red = configuracion.getRedDePetri();
+            correr(red, monitor, Integer.parseInt(k), alfaReal);
+            String escenario = monitor + " con politica " + politica + ", hilos x" + k + ": ";
+            Banco.comprobar(configuracion.getVerificador().esValida(), escenario + "la secuencia no es valida");
+            Banco.comprobar(configuracion.getVerificador().getTotal() == clientes,
+                escenario + configuracion.getVerificador().getTotal() + " invariantes en lugar de " + clientes);
+            if (marcadoEsperado == null) {
+              marcadoEsperado = red.getMarcado().clone();
+            }
+            Banco.comprobar(Arrays.equals(red.getMarcado(), marcadoEsperado), escenario + "marcado final "
+                + Arrays.toString(red.getMarcado()) + " en lugar de " + Arrays.toString(marcadoEsperado));
+            long[] disparos = red.getDisparos();
+            comprobarDisparos(disparos, clientes, escenario);
+            long[] reparto = repartos.computeIfAbsent(monitor,
+                clave -> new long[] { Long.MAX_VALUE, Long.MIN_VALUE, 0, Long.MAX_VALUE, Long.MIN_VALUE, 0 });
+            for (int c = 0; c < CONFLICTOS.length; c++) {
+              reparto[3 * c] = Math.min(reparto[3 * c], disparos[CONFLICTOS[c][0]]);
+              reparto[3 * c + 1] = Math.max(reparto[3 * c + 1], disparos[CONFLICTOS[c][0]]);
+              reparto[3 * c + 2] += disparos[CONFLICTOS[c][0]];
+            }
+          }
+        }
+        for (int c = 0; c < CONFLICTOS.length; c++) {
+          double global = (double) repartos.get("GLOBAL")[3 * c + 2] / repeticiones;
+          double sinBloqueo = (double) repartos.get("SIN_BLOQUEO")[3 * c + 2] / repeticiones;
+          Banco.comprobar(Math.abs(sinBloqueo - global) <= tolerancia * clientes, "Politica " + politica + ", hilos x"
+              + k + ": T" + CONFLICTOS[c][0] + " disparo en promedio " + sinBloqueo + " veces con SIN_BLOQUEO y "
+              + global + " con GLOBAL");
+        }
+        StringBuilder resumen = new StringBuilder();
+        for (String monitor : MONITORES) {
+          long[] reparto = repartos.get(monitor);
+          resumen.append(", ").append(monitor).append(" T2 ").append(reparto[0]).append('-').append(reparto[1])
+              .append(" T6 ").append(reparto[3]).append('-').append(reparto[4]);
+        }
+        System.out.println("OK politica " + politica + ", hilos x" + k + ", " + repeticiones + " repeticiones"
+            + resumen);
+      }
+    }
+  }
+
+  private static void comprobarDisparos(long[] disparos, int clientes, String escenario) {
+    // Las que dispara cada cliente una vez, sin importar la politica
+    for (int t : new int[] { 0, 1, 11 }) {
+      Banco.comprobar(disparos[t] == clientes, escenario + "T" + t + " disparo " + disparos[t] + " veces");
+    }
+    // Cada rama del conflicto sigue su camino hasta el final
+    Banco.comprobar(disparos[4] == disparos[3] && disparos[5] == disparos[2], escenario + "agentes incompletos: "
+        + Arrays.toString(disparos));
+    Banco.comprobar(disparos[8] == disparos[7] && disparos[9] == disparos[6] && disparos[10] == disparos[6],
+        escenario + "cierres incompletos: " + Arrays.toString(disparos));
+    for (int[] par : CONFLICTOS) {
+      long suma = disparos[par[0]] + disparos[par[1]];
+      Banco.comprobar(suma == clientes, escenario + "T" + par[0] + " + T" + par[1] + " = " + suma);
+    }
+  }
+
+  private static void correr(RedDePetri red, String monitor, int multiplicador, boolean alfaReal)
+      throws InterruptedException {
+    if (!alfaReal) {
+      for (AlfaYBeta ventana : red.getAlfayBeta()) {
+        if (ventana.tieneRestriccion())
+          ventana.setAlfaYBeta(0, ventana.getBeta());
+      }
+    }
+    MonitorInterface m = monitor.equals("SIN_BLOQUEO") ? new MonitorSinBloqueo(red)
+        : Monitor.crear(red, ModoExclusion.valueOf(monitor), EstrategiaDeSincronizacion.JUSTA);
+    List<int[]> secuencias = new ArrayList<>();
+    for (int i = 0; i < multiplicador; i++) {
+      agregar(secuencias, Main.CANTIDAD_HILOS_GEN_CLIENTES, 0, 1);
+      agregar(secuencias, Main.CANTIDAD_HILOS_AGENTE_1, 2, 5);
+      agregar(secuencias, Main.CANTIDAD_HILOS_AGENTE_2, 3, 4);
+      agregar(secuencias, Main.CANTIDAD_HILOS_CANCELACION, 7, 8);
+      agregar(secuencias, Main.CANTIDAD_HILOS_CONFIRMACION, 6, 9, 10);
+      agregar(secuencias, Main.CANTIDAD_HILOS_SALIDA, 11);
+    }
+    List<Thread> hilos = new ArrayList<>();
+    for (int[] secuencia : secuencias) {
+      hilos.add(new Thread(() -> {
+        while (true) {
+          for (int t : secuencia) {
+            if (!m.fireTransition(t))
+              return;
+          }
+        }
+      }));
+    }
+    for (Thread h : hilos)
+      h.start();
+    for (Thread h : hilos)
+      h.join();
+  }
+
+  private static void agregar(List<int[]> secuencias, int cantidad, int... transiciones) {
+    for (int i = 0; i < cantidad; i++) {
+      secuencias.add(transiciones);
+    }
+  }
+}
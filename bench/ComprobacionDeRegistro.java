@@ -0,0 +1,121 @@
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import registro.RegistroAsincrono;
+
+/**
+ * Comprueba la ida y vuelta de {@link RegistroAsincrono} con varios
+ * productores, en los dos formatos. Cada productor alterna textos con
+ * caracteres de varios bytes en UTF-8, escritos con
+ * {@link RegistroAsincrono#escribirEsperando(CharSequence)} (que no se pueden
+ * perder), y registros binarios, escritos sin bloquear (que se pueden
+ * descartar). Al cerrar, relee el archivo (pasando el binario a texto con
+ * {@link RegistroAsincrono#volcar(Path, Path)}) y comprueba que estén todos los
+ * textos, tantos registros como se aceptaron, cada entrada intacta y las de
+ * cada productor en orden.
+ *
+ * Uso: {@code java ComprobacionDeRegistro [opcion=valor ...]}, con las opciones
+ * {@code productores}, {@code entradas} (por productor) y {@code capacidad}
+ * (bytes del anillo; uno chico fuerza descartes y esperas).
+ */
+public class ComprobacionDeRegistro {
+
+  private static final String SUFIJO = "ñ€😀"; // uno, dos y cuatro bytes mas alla del ASCII
+  private static final int TIPO = 7;
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    int productores = Integer.parseInt(opciones.getOrDefault("productores", "4"));
+    int entradas = Integer.parseInt(opciones.getOrDefault("entradas", "200000"));
+    int capacidad = Integer.parseInt(opciones.getOrDefault("capacidad", "4096"));
+
+    for (RegistroAsincrono.Formato formato : RegistroAsincrono.Formato.values()) {
+      Path archivo = Files.createTempFile("registro", "." + formato.name().toLowerCase());
+      Path texto = archivo;
+      try {
+        long[] registrosAceptados = escribir(archivo, formato, productores, entradas, capacidad);
+        if (formato == RegistroAsincrono.Formato.BINARIO) {
+          texto = Files.createTempFile("registro", ".volcado");
+          RegistroAsincrono.volcar(archivo, texto);
+        }
+        long registros = comprobarLineas(Files.readAllLines(texto, StandardCharsets.UTF_8), productores, entradas,
+            registrosAceptados);
+        System.out.println("OK " + formato + ": " + (long) productores * ((entradas + 1) / 2) + " textos y "
+            + registros + " registros");
+      } finally {
+        Files.deleteIfExists(archivo);
+        Files.deleteIfExists(texto);
+      }
+    }
+  }
+
+  /** Escribe desde todos los productores y devuelve los registros aceptados de cada uno. */
+  private static long[] escribir(Path archivo, RegistroAsincrono.Formato formato, int productores, int entradas,
+      int capacidad) throws Exception {
+    RegistroAsincrono registro = new RegistroAsincrono(archivo, formato, capacidad);
+    long[] aceptados = new long[productores];
+    Thread[] hilos = new Thread[productores];
+    for (int h = 0; h < productores; h++) {
+      final int productor = h;
+      hilos[h] = new Thread(() -> {
+        StringBuilder linea = new StringBuilder();
+        for (int i = 0; i < entradas; i++) {
+          if (i % 2 == 0) {
+            linea.setLength(0);
+            linea.append('h').append(productor).append(' ').append(i).append(' ').append(SUFIJO).append('\n');
+            registro.escribirEsperando(linea);
+          } else if (registro.registrar(TIPO, productor, i)) {
+            aceptados[productor]++;
+          }
+        }
+      });
+      hilos[h].start();
+    }
+    for (Thread hilo : hilos)
+      hilo.join();
+    registro.close();
+    return aceptados;
+  }
+
+  /** Comprueba las líneas y devuelve la cantidad de registros leídos. */
+  private static long comprobarLineas(List<String> lineas, int productores, int entradas, long[] aceptados) {
+    int[] ultimoTexto = new int[productores];
+    int[] ultimoRegistro = new int[productores];
+    long[] textos = new long[productores];
+    long[] registros = new long[productores];
+    Arrays.fill(ultimoTexto, -2); // los textos son los pares
+    Arrays.fill(ultimoRegistro, -1);
+    for (String linea : lineas) {
+      String[] campos = linea.split(" ");
+      if (linea.startsWith("h")) {
+        Banco.comprobar(campos.length == 3 && campos[2].equals(SUFIJO), "Texto roto: " + linea);
+        int productor = Integer.parseInt(campos[0].substring(1));
+        int i = Integer.parseInt(campos[1]);
+        Banco.comprobar(i == ultimoTexto[productor] + 2, "Texto fuera de orden o perdido: " + linea);
+        ultimoTexto[productor] = i;
+        textos[productor]++;
+      } else {
+        // R<tipo> <instante> <valor>, con el productor como instante
+        Banco.comprobar(campos.length == 3 && campos[0].equals("R" + TIPO), "Registro roto: " + linea);
+        int productor = Integer.parseInt(campos[1]);
+        int i = Integer.parseInt(campos[2]);
+        Banco.comprobar(i > ultimoRegistro[productor] && i % 2 == 1, "Registro fuera de orden: " + linea);
+        ultimoRegistro[productor] = i;
+        registros[productor]++;
+      }
+    }
+    long total = 0;
+    for (int h = 0; h < productores; h++) {
+      Banco.comprobar(textos[h] == (entradas + 1) / 2, "El productor " + h + " escribio " + (entradas + 1) / 2
+          + " textos y se leyeron " + textos[h]);
+      Banco.comprobar(registros[h] == aceptados[h], "Al productor " + h + " se le aceptaron " + aceptados[h]
+          + " registros y se leyeron " + registros[h]);
+      total += registros[h];
+    }
+    return total;
+  }
+}
@@ -0,0 +1,141 @@
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import petri.ObservadorDeDisparos;
+import petri.RedDePetri;
+import registro.EscritorDeTraza;
+import registro.LectorDeTraza;
+
+/**
+ * Comprueba la ida y vuelta de {@link EscritorDeTraza} a {@link LectorDeTraza}.
+ * Graba disparos al azar de la red de la agencia y guarda, con otro observador
+ * de la red, cada transición con el instante que recibió el escritor; después
+ * lee la traza y compara cada disparo (transición, instante e hilo), la
+ * cantidad, el marcado final y los disparos por transición del cierre. Por
+ * último corta el archivo en varios puntos, en medio de un registro y en el
+ * cierre, y comprueba que se lean exactamente los registros completos que
+ * quedaron y que la traza figure como incompleta.
+ *
+ * Uso: {@code java ComprobacionDeTraza [opcion=valor ...]}, con las opciones
+ * {@code clientes} (de la red de la agencia), {@code cortes} (cantidad de
+ * archivos cortados a probar) y {@code semilla}.
+ */
+public class ComprobacionDeTraza {
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> opciones = Banco.leerOpciones(args);
+    int clientes = Integer.parseInt(opciones.getOrDefault("clientes", "50000"));
+    int cortes = Integer.parseInt(opciones.getOrDefault("cortes", "50"));
+    SplittableRandom azar = new SplittableRandom(Long.parseLong(opciones.getOrDefault("semilla", "1")));
+
+    Path archivo = Files.createTempFile("traza", ".bin");
+    Path cortado = Files.createTempFile("traza", ".cortada");
+    try {
+      RedDePetri red = new ConfiguracionInicial(clientes).getRedDePetri();
+      EscritorDeTraza escritor = new EscritorDeTraza(archivo, red, ConfiguracionInicial.POLITICA_POR_DEFECTO);
+      Grabados grabados = new Grabados();
+      red.agregarObservador(grabados);
+      int transiciones = red.getCantidadDeTransiciones();
+      int[] sensibilizadas = new int[transiciones];
+      while (true) {
+        int n = 0;
+        for (int t = 0; t < transiciones; t++) {
+          if (red.sensibilizado(t))
+            sensibilizadas[n++] = t;
+        }
+        if (n == 0)
+          break;
+        red.dispararTransicion(sensibilizadas[azar.nextInt(n)]);
+      }
+      escritor.close();
+      int cantidad = grabados.cantidad;
+
+      LectorDeTraza lector = new LectorDeTraza(archivo);
+      Banco.comprobar(lector.estaCompleta(), "La traza cerrada figura como incompleta");
+      Banco.comprobar(lector.getCantidadDisparos() == cantidad,
+          "El cierre dice " + lector.getCantidadDisparos() + " disparos y se grabaron " + cantidad);
+      Banco.comprobar(Arrays.equals(lector.getMarcadoFinal(), red.getMarcado()), "El marcado final no coincide");
+      Banco.comprobar(Arrays.equals(lector.getDisparosFinales(), red.getDisparos()),
+          "Los disparos por transicion no coinciden");
+      Banco.comprobar(leer(lector, grabados) == cantidad, "Se leyeron menos disparos de los grabados");
+
+      // Cortes al azar dentro de los registros y en el cierre
+      long finDeRegistros = Files.size(archivo) - 4L * red.getMarcado().length - 8L * transiciones;
+      for (int i = 0; i < cortes; i++) {
+        long largo = i == 0 ? Files.size(archivo) - 1
+            : EscritorDeTraza.ENCABEZADO + azar.nextLong(finDeRegistros - EscritorDeTraza.ENCABEZADO + 1);
+        Files.copy(archivo, cortado, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel canal = FileChannel.open(cortado, StandardOpenOption.WRITE)) {
+          canal.truncate(largo);
+        }
+        LectorDeTraza incompleta = new LectorDeTraza(cortado);
+        Banco.comprobar(!incompleta.estaCompleta(), "Una traza cortada en " + largo + " bytes figura como completa");
+        long leidos = leer(incompleta, grabados);
+        long completos = registrosCompletos(archivo, largo, cantidad);
+        Banco.comprobar(leidos == completos, "Cortada en " + largo + " bytes se leyeron " + leidos
+            + " disparos y hay " + completos + " completos");
+      }
+      System.out.println("OK: " + cantidad + " disparos en " + Files.size(archivo) + " bytes ("
+          + String.format("%.2f", (double) (finDeRegistros - EscritorDeTraza.ENCABEZADO) / cantidad)
+          + " bytes por disparo), " + cortes + " cortes");
+    } finally {
+      Files.deleteIfExists(archivo);
+      Files.deleteIfExists(cortado);
+    }
+  }
+
+  /** Los disparos que recibió el escritor, en orden. */
+  private static final class Grabados implements ObservadorDeDisparos {
+    int[] transiciones = new int[1024];
+    long[] instantes = new long[transiciones.length];
+    int cantidad;
+
+    @Override
+    public void disparada(int transicion, long instanteNanos) {
+      if (cantidad == transiciones.length) {
+        transiciones = Arrays.copyOf(transiciones, 2 * cantidad);
+        instantes = Arrays.copyOf(instantes, 2 * cantidad);
+      }
+      transiciones[cantidad] = transicion;
+      instantes[cantidad++] = instanteNanos;
+    }
+  }
+
+  /** Lee la traza comparando cada disparo con lo grabado y devuelve cuántos leyó. */
+  private static long leer(LectorDeTraza lector, Grabados grabados) {
+    long hilo = Thread.currentThread().getId();
+    while (lector.siguiente()) {
+      int i = (int) (lector.getLeidos() - 1);
+      Banco.comprobar(lector.getTransicion() == grabados.transiciones[i]
+          && lector.getInstanteNanos() == grabados.instantes[i] && lector.getHilo() == hilo,
+          "El disparo " + i + " no coincide: T" + lector.getTransicion() + " en " + lector.getInstanteNanos()
+              + " en lugar de T" + grabados.transiciones[i] + " en " + grabados.instantes[i]);
+    }
+    return lector.getLeidos();
+  }
+
+  // Registros que terminan antes del corte, contando los bytes de cada uno en
+  // la traza completa
+  private static long registrosCompletos(Path archivo, long largo, int cantidad) throws Exception {
+    byte[] datos = Files.readAllBytes(archivo);
+    int p = EscritorDeTraza.ENCABEZADO;
+    long completos = 0;
+    while (completos < cantidad) {
+      for (int campo = 0; campo < 3; campo++) {
+        while (datos[p++] < 0) {
+          // bytes de continuacion del varint
+        }
+      }
+      if (p > largo)
+        break;
+      completos++;
+    }
+    return completos;
+  }
+}
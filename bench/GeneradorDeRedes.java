@@ -0,0 +1,190 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import petri.AlfaYBeta;
+import petri.MatrizIncidenciaDispersa;
+import petri.RedDePetri;
+
+/**
+ * Generador de redes de Petri sintéticas para benchmarks. Todas las redes son
+ * vivas (siempre queda alguna transición sensibilizada), de modo que se puede
+ * disparar indefinidamente, y se arman arco por arco con
+ * {@link MatrizIncidenciaDispersa#desdeArcos}, sin matriz densa. La cantidad de
+ * lugares pedida se redondea hacia arriba al tamaño de la estructura.
+ */
+public class GeneradorDeRedes {
+
+  /** Estructuras disponibles. */
+  public enum Tipo {
+    CADENA, // anillo de lugares, un token cada cuatro lugares
+    FORK_JOIN, // bloques: fork a 4 ramas, una transicion por rama y join
+    CONFLICTOS, // grupos de 8 transiciones que compiten por un mismo lugar
+    ALEATORIA, // maquina de estados: cada lugar tiene de 1 a 3 salidas a lugares al azar
+    AGENCIA // replicas de la red de la agencia, con T11 devolviendo el cliente a p0
+  }
+
+  private static final int RAMAS = 4;
+  private static final int COMPETIDORAS = 8;
+
+  // Red de la agencia (la de ConfiguracionInicial) con T11 devolviendo el token a p0
+  private static final int[][] AGENCIA = {
+      { -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1 },
+      { -1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
+      { 1, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 },
+      { 0, 1, -1, -1, 0, 0, 0, 0, 0, 0, 0, 0 },
+      { -1, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0 },
+      { 0, 0, 1, 0, 0, -1, 0, 0, 0, 0, 0, 0 },
+      { 0, 0, -1, 0, 0, 1, 0, 0, 0, 0, 0, 0 },
+      { 0, 0, 0, -1, 1, 0, 0, 0, 0, 0, 0, 0 },
+      { 0, 0, 0, 1, -1, 0, 0, 0, 0, 0, 0, 0 },
+      { 0, 0, 0, 0, 1, 1, -1, -1, 0, 0, 0, 0 },
+      { 0, 0, 0, 0, 0, 0, -1, -1, 1, 0, 1, 0 },
+      { 0, 0, 0, 0, 0, 0, 1, 0, 0, -1, 0, 0 },
+      { 0, 0, 0, 0, 0, 0, 0, 1, -1, 0, 0, 0 },
+      { 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, -1, 0 },
+      { 0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 1, -1 } };
+  private static final int[] MARCADO_AGENCIA = { 5, 1, 0, 0, 5, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0 };
+
+  private GeneradorDeRedes() {
+  }
+
+  /**
+   * Genera una red del tipo pedido, sin ventanas de tiempo y con una
+   * {@link PoliticaAleatoria}.
+   *
+   * @param tipo    estructura de la red.
+   * @param lugares cantidad aproximada de lugares (mínima).
+   * @param semilla semilla para las partes aleatorias.
+   */
+  public static RedDePetri generar(Tipo tipo, int lugares, long semilla) {
+    Arcos arcos = new Arcos();
+    int[] marcado;
+    int transiciones;
+    SplittableRandom azar = new SplittableRandom(semilla);
+    switch (tipo) {
+      case CADENA: {
+        int n = Math.max(lugares, 2);
+        marcado = new int[n];
+        for (int i = 0; i < n; i++) {
+          arcos.agregar(i, i, -1);
+          arcos.agregar((i + 1) % n, i, 1);
+          if (i % 4 == 0)
+            marcado[i] = 1;
+        }
+        transiciones = n;
+        break;
+      }
+      case FORK_JOIN: {
+        int porBloque = 1 + 2 * RAMAS;
+        int bloques = (Math.max(lugares, porBloque) + porBloque - 1) / porBloque;
+        marcado = new int[bloques * porBloque];
+        transiciones = bloques * (RAMAS + 2);
+        for (int b = 0; b < bloques; b++) {
+          int entrada = b * porBloque;
+          int fork = b * (RAMAS + 2);
+          int join = fork + RAMAS + 1;
+          marcado[entrada] = 1;
+          arcos.agregar(entrada, fork, -1);
+          arcos.agregar(entrada, join, 1);
+          for (int r = 0; r < RAMAS; r++) {
+            int antes = entrada + 1 + r;
+            int despues = entrada + 1 + RAMAS + r;
+            arcos.agregar(antes, fork, 1);
+            arcos.agregar(antes, fork + 1 + r, -1);
+            arcos.agregar(despues, fork + 1 + r, 1);
+            arcos.agregar(despues, join, -1);
+          }
+        }
+        break;
+      }
+      case CONFLICTOS: {
+        int porGrupo = 1 + COMPETIDORAS;
+        int grupos = (Math.max(lugares, porGrupo) + porGrupo - 1) / porGrupo;
+        marcado = new int[grupos * porGrupo];
+        transiciones = grupos * 2 * COMPETIDORAS;
+        for (int g = 0; g < grupos; g++) {
+          int compartido = g * porGrupo;
+          marcado[compartido] = 2;
+          for (int i = 0; i < COMPETIDORAS; i++) {
+            int propio = compartido + 1 + i;
+            int toma = g * 2 * COMPETIDORAS + i;
+            int devuelve = toma + COMPETIDORAS;
+            arcos.agregar(compartido, toma, -1);
+            arcos.agregar(propio, toma, 1);
+            arcos.agregar(propio, devuelve, -1);
+            arcos.agregar(compartido, devuelve, 1);
+          }
+        }
+        break;
+      }
+      case ALEATORIA: {
+        int n = Math.max(lugares, 2);
+        marcado = new int[n];
+        int t = 0;
+        for (int p = 0; p < n; p++) {
+          int salidas = 1 + azar.nextInt(3);
+          for (int s = 0; s < salidas; s++) {
+            int destino = azar.nextInt(n - 1);
+            if (destino >= p)
+              destino++;
+            arcos.agregar(p, t, -1);
+            arcos.agregar(destino, t, 1);
+            t++;
+          }
+        }
+        for (int i = 0; i < n / 4 + 1; i++)
+          marcado[azar.nextInt(n)]++;
+        transiciones = t;
+        break;
+      }
+      case AGENCIA: {
+        int porReplica = AGENCIA.length;
+        int porReplicaT = AGENCIA[0].length;
+        int replicas = (Math.max(lugares, porReplica) + porReplica - 1) / porReplica;
+        marcado = new int[replicas * porReplica];
+        transiciones = replicas * porReplicaT;
+        for (int r = 0; r < replicas; r++) {
+          System.arraycopy(MARCADO_AGENCIA, 0, marcado, r * porReplica, porReplica);
+          for (int p = 0; p < porReplica; p++) {
+            for (int t = 0; t < porReplicaT; t++) {
+              if (AGENCIA[p][t] != 0)
+                arcos.agregar(r * porReplica + p, r * porReplicaT + t, AGENCIA[p][t]);
+            }
+          }
+        }
+        break;
+      }
+      default:
+        throw new IllegalArgumentException("Tipo de red desconocido: " + tipo);
+    }
+
+    MatrizIncidenciaDispersa matriz = MatrizIncidenciaDispersa.desdeArcos(marcado.length, transiciones,
+        arcos.lugares, arcos.transiciones, arcos.valores, arcos.cantidad);
+    ArrayList<AlfaYBeta> ventanas = new ArrayList<>(transiciones);
+    for (int t = 0; t < transiciones; t++) {
+      ventanas.add(new AlfaYBeta());
+    }
+    return new RedDePetri(matriz, marcado, new PoliticaAleatoria(semilla), ventanas);
+  }
+
+  /** Lista de arcos que crece a medida que se agregan. */
+  private static class Arcos {
+    int[] lugares = new int[1024];
+    int[] transiciones = new int[1024];
+    int[] valores = new int[1024];
+    int cantidad;
+
+    void agregar(int lugar, int transicion, int valor) {
+      if (cantidad == lugares.length) {
+        lugares = Arrays.copyOf(lugares, cantidad * 2);
+        transiciones = Arrays.copyOf(transiciones, cantidad * 2);
+        valores = Arrays.copyOf(valores, cantidad * 2);
+      }
+      lugares[cantidad] = lugar;
+      transiciones[cantidad] = transicion;
+      valores[cantidad] = valor;
+      cantidad++;
+    }
+  }
+}
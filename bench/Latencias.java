@@ -0,0 +1,58 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registro de latencias de un hilo del benchmark. Cada hilo escribe en su
+ * propio registro (sin sincronización); al terminar la medición se unen todos
+ * para calcular percentiles.
+ */
+public class Latencias {
+  private long[] muestras = new long[1 << 12];
+  private int cantidad;
+
+  /** Agrega una muestra, en nanosegundos. */
+  public void registrar(long nanos) {
+    if (cantidad == muestras.length) {
+      muestras = Arrays.copyOf(muestras, cantidad * 2);
+    }
+    muestras[cantidad++] = nanos;
+  }
+
+  public int getCantidad() {
+    return cantidad;
+  }
+
+  /**
+   * Une los registros y los ordena.
+   *
+   * @return todas las muestras, de menor a mayor.
+   */
+  public static long[] unir(List<Latencias> registros) {
+    int total = 0;
+    for (Latencias l : registros) {
+      total += l.cantidad;
+    }
+    long[] todas = new long[total];
+    int i = 0;
+    for (Latencias l : registros) {
+      System.arraycopy(l.muestras, 0, todas, i, l.cantidad);
+      i += l.cantidad;
+    }
+    Arrays.sort(todas);
+    return todas;
+  }
+
+  /**
+   * Devuelve el percentil pedido de muestras ya ordenadas.
+   *
+   * @param ordenadas muestras ordenadas de menor a mayor.
+   * @param percentil entre 0 y 100.
+   */
+  public static long percentil(long[] ordenadas, double percentil) {
+    if (ordenadas.length == 0) {
+      return 0;
+    }
+    int indice = (int) Math.ceil(percentil / 100.0 * ordenadas.length) - 1;
+    return ordenadas[Math.max(0, Math.min(ordenadas.length - 1, indice))];
+  }
+}
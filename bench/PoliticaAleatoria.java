@@ -0,0 +1,26 @@
+import java.util.List;
+import java.util.SplittableRandom;
+
+import petri.Politica;
+
+/**
+ * Política genérica para redes sintéticas: elige un candidato al azar, con una
+ * semilla fija para que las corridas sean reproducibles.
+ */
+public class PoliticaAleatoria implements Politica {
+  private final SplittableRandom azar;
+
+  public PoliticaAleatoria(long semilla) {
+    azar = new SplittableRandom(semilla);
+  }
+
+  @Override
+  public void setPolitica(int numeroDePolitica) {
+    // Una sola politica
+  }
+
+  @Override
+  public int llamadaApolitica(List<Integer> candidatos) {
+    return candidatos.get(azar.nextInt(candidatos.size()));
+  }
+}
@@ -1,34 +1,126 @@
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 
+import monitor.EstrategiaDeSincronizacion;
+import monitor.MetricasDeDisparo;
+import monitor.ModoExclusion;
 import monitor.Monitor;
+import monitor.MonitorInterface;
+import monitor.MonitorSinBloqueo;
 import petri.AlfaYBeta;
+import petri.DiarioDeTransiciones;
+import petri.InvariantesDeRed;
+import petri.MatrizIncidenciaDispersa;
 import petri.Politica;
 import petri.PoliticaAgenciaVuelo;
 import petri.PoliticaInexistenteException;
 import petri.RedDePetri;
+import petri.VerificadorEnLinea;
+import registro.EscritorDeTraza;
 
 public class ConfiguracionInicial {
+    public static final int CLIENTES_POR_DEFECTO = 186;
+    public static final int POLITICA_POR_DEFECTO = 2;
+
     private int numero_politica;
+    private int toleranciaBalanceo; // disparos de diferencia que la politica balanceada trata como empate
     private Politica politica;
     private int[] marcado;
     private int[][] matrizIncidencia;
     private RedDePetri redDePetri;
     private ArrayList<AlfaYBeta> alfaYBetas;
+    private boolean monitorSinBloqueo; // true: MonitorSinBloqueo (CAS), false: Monitor con mutex
+    private ModoExclusion modoExclusion; // mutex global o uno por cluster de conflicto
+    private EstrategiaDeSincronizacion sincronizacion; // lock justo, no justo o con giro
+    private boolean medirLatencias; // histogramas por transicion y fase (solo Monitor)
+    private MetricasDeDisparo metricas;
+    private MonitorInterface monitor; // se crea recien cuando se pide (una simulacion no lo usa)
+    private boolean retenerSecuencia; // false: el diario solo cuenta los disparos (corridas largas)
+    private boolean validarEnLinea; // valida los invariantes mientras se dispara
+    private VerificadorEnLinea verificador;
+    private InvariantesDeRed invariantes; // calculados desde la matriz de incidencia
+    private boolean grabarTraza; // graba cada disparo en traza.bin (EscritorDeTraza)
+    private boolean registrarDisparos; // agrega al log un registro binario por disparo
+    private EscritorDeTraza traza;
+    private final int cantidadClientes;
 
     public ConfiguracionInicial() {
+        this(CLIENTES_POR_DEFECTO);
+    }
+
+    /**
+     * @param cantidadClientes tokens iniciales de p0 (clientes por atender).
+     */
+    public ConfiguracionInicial(int cantidadClientes) {
+        this(cantidadClientes, POLITICA_POR_DEFECTO);
+    }
+
+    /**
+     * @param cantidadClientes tokens iniciales de p0 (clientes por atender).
+     * @param numeroPolitica   política de {@link PoliticaAgenciaVuelo} (1
+     *                         balanceada, 2 priorizada).
+     * @throws IllegalArgumentException si la política no existe.
+     */
+    public ConfiguracionInicial(int cantidadClientes, int numeroPolitica) {
+        this.cantidadClientes = cantidadClientes;
+        this.numero_politica = numeroPolitica;
         setupMatriz();
         setupPolitica();
         setupAlfaYBeta();
         setupRedDePetri();
-        setupMonitor();
     }
 
     public RedDePetri getRedDePetri() {
         return redDePetri;
     }
 
+    /** Devuelve el verificador de invariantes en línea, o {@code null} si no se valida en línea. */
+    public VerificadorEnLinea getVerificador() {
+        return verificador;
+    }
+
+    /** Devuelve los T-invariantes y P-invariantes de la red, calculados desde la matriz. */
+    public InvariantesDeRed getInvariantes() {
+        return invariantes;
+    }
+
+    /** Devuelve el escritor de la traza binaria, o {@code null} si no se graba. */
+    public EscritorDeTraza getTraza() {
+        return traza;
+    }
+
+    /** Indica si el log debe anotar cada disparo ({@link Log#registrarDisparos()}). */
+    public boolean registraDisparos() {
+        return registrarDisparos;
+    }
+
+    /** Cierra la traza binaria, si se graba. Debe llamarse cuando la red terminó. */
+    public void cerrarTraza() {
+        if (traza != null) {
+            try {
+                traza.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public MonitorInterface getMonitor() {
+        if (monitor == null) {
+            setupMonitor();
+        }
+        return monitor;
+    }
+
+    /** Devuelve las métricas de latencia del monitor, o {@code null} si no se miden. */
+    public MetricasDeDisparo getMetricas() {
+        getMonitor();
+        return metricas;
+    }
+
     private void setupMatriz() {
-        marcado = new int[] { 186, 1, 0, 0, 5, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0 };
+        marcado = new int[] { cantidadClientes, 1, 0, 0, 5, 0, 1, 1, 0, 0, 1, 0, 0, 0, 0 };
 
         matrizIncidencia = new int[][] {
                 { -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, // modificado para que t11 no ponga token de vuelta en p0
@@ -50,20 +142,58 @@ public class ConfiguracionInicial {
     }
 
     private void setupPolitica() {
-        numero_politica = 2;
+        toleranciaBalanceo = 0;
         try {
-            politica = new PoliticaAgenciaVuelo(numero_politica);
+            politica = new PoliticaAgenciaVuelo(numero_politica, toleranciaBalanceo);
         } catch (PoliticaInexistenteException pie) {
-            System.out.println("Politica Invalida");
+            throw new IllegalArgumentException("Politica inexistente: " + numero_politica
+                    + " (1 balanceada, 2 priorizada).", pie);
         }
     }
 
     private void setupRedDePetri() {
-        redDePetri = new RedDePetri(matrizIncidencia, marcado, politica, alfaYBetas);
+        retenerSecuencia = true;
+        validarEnLinea = true;
+        grabarTraza = false;
+        registrarDisparos = false;
+        MatrizIncidenciaDispersa matriz = MatrizIncidenciaDispersa.desdeDensa(matrizIncidencia);
+        DiarioDeTransiciones diario = retenerSecuencia ? new DiarioDeTransiciones()
+                : DiarioDeTransiciones.sinRetener();
+        // Los invariantes se calculan antes de crear la red, que dispara sobre el
+        // mismo arreglo del marcado
+        invariantes = InvariantesDeRed.calcular(matrizIncidencia, marcado);
+        redDePetri = new RedDePetri(matriz, marcado, politica, alfaYBetas, diario);
+        politica.setRed(redDePetri); // recien ahora la red esta construida
+        redDePetri.setInvariantes(invariantes);
+        if (validarEnLinea || !retenerSecuencia) {
+            verificador = new VerificadorEnLinea(redDePetri, invariantes.getSecuenciasDeDisparo(), null);
+        }
+        if (grabarTraza) {
+            try {
+                traza = new EscritorDeTraza(Paths.get("traza.bin"), redDePetri, numero_politica);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 
     private void setupMonitor() {
-        Monitor.getInstance(redDePetri);
+        monitorSinBloqueo = false;
+        modoExclusion = ModoExclusion.GLOBAL;
+        sincronizacion = EstrategiaDeSincronizacion.JUSTA;
+        medirLatencias = true;
+        if (monitorSinBloqueo) {
+            monitor = new MonitorSinBloqueo(redDePetri);
+        } else {
+            // Cada configuracion tiene su propia red, asi que su monitor no puede
+            // ser la instancia unica (que quedaria atada a la primera red)
+            Monitor m = Monitor.crear(redDePetri, modoExclusion, sincronizacion);
+            if (medirLatencias) {
+                metricas = m.habilitarMetricas();
+            }
+            monitor = m;
+        }
+
     }
 
     private void setupAlfaYBeta() {
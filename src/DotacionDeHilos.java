@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+
+import monitor.MonitorInterface;
+import procesos.AtencionAgente;
+import procesos.Cancelacion;
+import procesos.ConfirmacionYPago;
+import procesos.EntradaDeClientes;
+import procesos.NumeroDeAgente;
+import procesos.Salida;
+import simulacion.SimuladorDeEventos;
+
+/**
+ * Cantidad de hilos de cada tipo de proceso de la agencia. Arma los hilos
+ * reales que lanza {@link Main} o los procesos equivalentes de una simulación
+ * en tiempo virtual, de modo que ambos usen siempre la misma dotación.
+ */
+public final class DotacionDeHilos {
+
+  /** La dotación de {@link Main}. */
+  public static final DotacionDeHilos PREDETERMINADA = new DotacionDeHilos(Main.CANTIDAD_HILOS_GEN_CLIENTES,
+      Main.CANTIDAD_HILOS_AGENTE_1, Main.CANTIDAD_HILOS_AGENTE_2, Main.CANTIDAD_HILOS_CANCELACION,
+      Main.CANTIDAD_HILOS_CONFIRMACION, Main.CANTIDAD_HILOS_SALIDA);
+
+  private final int entrada;
+  private final int agente1;
+  private final int agente2;
+  private final int cancelacion;
+  private final int confirmacion;
+  private final int salida;
+
+  /**
+   * @throws IllegalArgumentException si alguna cantidad es menor a 1 (la red no
+   *                                  terminaría).
+   */
+  public DotacionDeHilos(int entrada, int agente1, int agente2, int cancelacion, int confirmacion, int salida) {
+    if (entrada < 1 || agente1 < 1 || agente2 < 1 || cancelacion < 1 || confirmacion < 1 || salida < 1) {
+      throw new IllegalArgumentException("Cada tipo de proceso necesita al menos un hilo.");
+    }
+    this.entrada = entrada;
+    this.agente1 = agente1;
+    this.agente2 = agente2;
+    this.cancelacion = cancelacion;
+    this.confirmacion = confirmacion;
+    this.salida = salida;
+  }
+
+  /**
+   * Lee una dotación con el formato
+   * {@code entrada,agente1,agente2,cancelacion,confirmacion,salida}, por
+   * ejemplo {@code 5,1,1,1,1,2}.
+   *
+   * @throws IllegalArgumentException si el formato es inválido.
+   */
+  public static DotacionDeHilos desdeTexto(String texto) {
+    String[] partes = texto.split(",");
+    if (partes.length != 6) {
+      throw new IllegalArgumentException("Se esperan 6 cantidades de hilos separadas por comas: " + texto);
+    }
+    int[] cantidades = new int[6];
+    for (int i = 0; i < 6; i++) {
+      cantidades[i] = Integer.parseInt(partes[i].trim());
+    }
+    return new DotacionDeHilos(cantidades[0], cantidades[1], cantidades[2], cantidades[3], cantidades[4],
+        cantidades[5]);
+  }
+
+  /**
+   * Crea (sin lanzar) los hilos de todos los procesos.
+   *
+   * @param monitor monitor que usan los procesos.
+   * @param factory fábrica de hilos.
+   * @return los hilos creados.
+   */
+  public List<Thread> crearHilos(MonitorInterface monitor, ThreadFactory factory) {
+    List<Thread> hilos = new ArrayList<>();
+    for (int i = 0; i < entrada; i++) {
+      hilos.add(factory.newThread(new EntradaDeClientes(monitor)));
+    }
+    for (int i = 0; i < agente1; i++) {
+      hilos.add(factory.newThread(new AtencionAgente(NumeroDeAgente.AGENTE1, monitor)));
+    }
+    for (int i = 0; i < agente2; i++) {
+      hilos.add(factory.newThread(new AtencionAgente(NumeroDeAgente.AGENTE2, monitor)));
+    }
+    for (int i = 0; i < cancelacion; i++) {
+      hilos.add(factory.newThread(new Cancelacion(monitor)));
+    }
+    for (int i = 0; i < confirmacion; i++) {
+      hilos.add(factory.newThread(new ConfirmacionYPago(monitor)));
+    }
+    for (int i = 0; i < salida; i++) {
+      hilos.add(factory.newThread(new Salida(monitor)));
+    }
+    return hilos;
+  }
+
+  /**
+   * Agrega al simulador los procesos equivalentes a los hilos, con las mismas
+   * transiciones y tiempos de proceso.
+   */
+  public void agregarProcesos(SimuladorDeEventos simulador) {
+    simulador.agregarProceso(new int[] { 0, 1 }, new long[] { EntradaDeClientes.DURACION_MS, 0 }, entrada);
+    simulador.agregarProceso(new int[] { 2, 5 }, new long[] { AtencionAgente.DURACION_MS, 0 }, agente1);
+    simulador.agregarProceso(new int[] { 3, 4 }, new long[] { AtencionAgente.DURACION_MS, 0 }, agente2);
+    simulador.agregarProceso(new int[] { 7, 8 }, new long[] { Cancelacion.DURACION_MS, 0 }, cancelacion);
+    simulador.agregarProceso(new int[] { 6, 9, 10 },
+        new long[] { ConfirmacionYPago.DURACION_CONFIRMACION_MS, ConfirmacionYPago.DURACION_PAGO_MS, 0 },
+        confirmacion);
+    simulador.agregarProceso(new int[] { 11 }, new long[] { Salida.DURACION_MS }, salida);
+  }
+
+  public int getEntrada() {
+    return entrada;
+  }
+
+  public int getAgente1() {
+    return agente1;
+  }
+
+  public int getAgente2() {
+    return agente2;
+  }
+
+  public int getCancelacion() {
+    return cancelacion;
+  }
+
+  public int getConfirmacion() {
+    return confirmacion;
+  }
+
+  public int getSalida() {
+    return salida;
+  }
+
+  @Override
+  public String toString() {
+    return entrada + "," + agente1 + "," + agente2 + "," + cancelacion + "," + confirmacion + "," + salida;
+  }
+}
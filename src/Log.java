@@ -1,195 +1,316 @@
-import java.io.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import petri.RedDePetri;
-
-/**
- * La clase {@code Log} se encarga de registrar información sobre el estado del
- * sistema en un archivo de log. Implementa {@code Runnable} para permitir
- * que se ejecute en un hilo separado y registre periódicamente el estado
- * del sistema, incluyendo estadísticas sobre las transiciones y los clientes.
- *
- * La clase usa un archivo de log denominado {@code log.txt}, y los datos se
- * escriben en dicho archivo de forma periódica con un intervalo de 100 ms,
- * o al finalizar el proceso.
- */
-public class Log implements Runnable {
-  private final long tiempo; // El tiempo de inicio del proceso de registro, en milisegundos.
-  private static final FileWriter file; // El escritor de archivo para guardar los registros.
-  private RedDePetri redDePetri;
-  private static final PrintWriter pw; // El escritor de texto que permite la escritura en el archivo de log.
-
-  static {
-    try {
-      file = new FileWriter("log.txt");
-      pw = new PrintWriter(file, true); // autoflush activado
-    } catch (IOException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  /**
-   * Constructor de la clase {@code Log}, inicializa el tiempo de inicio del
-   * proceso.
-   */
-  public Log(RedDePetri redDePetri) {
-    tiempo = System.currentTimeMillis();
-    this.redDePetri = redDePetri;
-  }
-
-  /**
-   * Cuenta cuántas veces aparece una transición específica en una cadena de
-   * secuencia.
-   *
-   * @param cadena     La secuencia de transiciones donde se realizará la
-   *                   búsqueda.
-   * @param transicion El identificador de la transición a contar (por ejemplo,
-   *                   "T2").
-   * @return El número de veces que aparece la transición en la secuencia.
-   * @throws IllegalArgumentException Si el formato de la transición no es válido.
-   */
-  public int contarTransiciones(String cadena, String transicion) {
-    // Asegúrate de que la transición comience con 'T' seguida de un número
-    if (!transicion.matches("T\\d+")) {
-      throw new IllegalArgumentException("Formato de transición inválido.");
-    }
-    // Expresión regular para encontrar transiciones válidas
-    String regex = transicion + "(?!\\d)"; // `(?<!\\d)` asegura que no haya un dígito después
-    Pattern pattern = Pattern.compile(regex);
-    Matcher matcher = pattern.matcher(cadena);
-    int contador = 0;
-    while (matcher.find()) {
-      contador++;
-    }
-    return contador;
-  }
-
-  /** Imprime la secuencia de transiciones al archivo de log. */
-  private void imprimirTransiciones() {
-    pw.println("secuencia de transiciones:\n" + redDePetri.getSecuencia());
-  }
-
-  /**
-   * Metodo que ejecuta el hilo y registra información sobre el estado del sistema
-   * en el archivo de
-   * log. Se ejecuta en un ciclo hasta que {@code Monitor} indique que el proceso
-   * ha terminado.
-   */
-  @Override
-  public void run() {
-    while (true) {
-      if (redDePetri.isTermino()) {
-        pw.println(
-            "tiempo en milis: "
-                + (System.currentTimeMillis() - tiempo)
-                + "\n"
-                + "clientes atendidos por el agente 1: "
-                + contarTransiciones(redDePetri.getSecuencia(), "T2")
-                + "\n"
-                + "clientes atendidos por el agente 2: "
-                + contarTransiciones(redDePetri.getSecuencia(), "T3")
-                + "\n"
-                + "Cantidad de clientes que confirmaron: "
-                + contarTransiciones(redDePetri.getSecuencia(), "T6")
-                + "\n"
-                + "Cantidad de clientes que Cancelaron: "
-                + contarTransiciones(redDePetri.getSecuencia(), "T7")
-                + "\n"
-                + "clientes que salieron en total: "
-                + redDePetri.getClientesSalientes()
-                + "\n");
-        imprimirTransiciones();
-        comprobarSecuencia();
-        return;
-      }
-      int[] marcado = redDePetri.getMarcado();
-      pw.println(
-          "Clientes por entrar: "
-              + marcado[0]
-              + "\n"
-              + "Clientes en puerta: "
-              + marcado[2]
-              + "\n"
-              + "Clientes esperando para reservar: "
-              + marcado[3]
-              + "\n"
-              + "Clientes atendiendose por agente 1: "
-              + marcado[5]
-              + "\n"
-              + "Clientes atendiendose por agente 2: "
-              + marcado[8]
-              + "\n"
-              + "Clientes esperando para cancelar o confirmar reserva: "
-              + marcado[9]
-              + "\n"
-              + "Clientes confirmando: "
-              + marcado[11]
-              + "\n"
-              + "Clientes pagando: "
-              + marcado[13]
-              + "\n"
-              + "Clientes cancelando: "
-              + marcado[12]
-              + "\n"
-              + "Clientes saliente: "
-              + redDePetri.getClientesSalientes()
-              + "\n");
-      try {
-        Thread.sleep(250); // Duracion del proceso
-      } catch (InterruptedException e) {
-        throw new RuntimeException(e);
-      }
-    }
-
-  }
-
-  private void comprobarSecuencia() {
-    pw.println();
-    try {
-      // Detectar dinámicamente el intérprete de Python
-      String pythonPath = detectPythonInterpreter();
-      if (pythonPath == null) {
-        return;
-      }
-
-      String scriptPath = "PetriFlightAnalyzer.py";
-      String parametro = redDePetri.getSecuencia();
-
-      // Crear el proceso
-      ProcessBuilder processBuilder = new ProcessBuilder(pythonPath, scriptPath, parametro);
-      processBuilder.redirectErrorStream(true);
-      Process process = processBuilder.start();
-
-      BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-      String line;
-      while ((line = reader.readLine()) != null) {
-        pw.println(line);
-      }
-
-      process.waitFor();
-    } catch (IOException | InterruptedException e) {
-      throw new RuntimeException("Error al ejecutar el script de Python.", e);
-    }
-  }
-
-  private String detectPythonInterpreter() {
-    String[] interpreters = { "python3", "python", "python2" };
-    for (String interpreter : interpreters) {
-      try {
-        ProcessBuilder processBuilder = new ProcessBuilder(interpreter, "--version");
-        processBuilder.redirectErrorStream(true);
-        Process process = processBuilder.start();
-
-        // Leer la salida para comprobar si es válido
-        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        if (reader.readLine() != null) {
-          return interpreter; // Devolver el primer intérprete válido
-        }
-      } catch (IOException ignored) {
-        // Ignorar y probar el siguiente intérprete
-      }
-    }
-    return null; // No se encontró un intérprete válido
-  }
-}
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+
+import monitor.MetricasDeDisparo;
+import petri.DiarioDeTransiciones;
+import petri.InstantaneaDeMarcado;
+import petri.InvariantesDeRed;
+import petri.RedDePetri;
+import petri.ValidadorDeInvariantes;
+import petri.VerificadorEnLinea;
+import registro.RegistroAsincrono;
+
+/**
+ * La clase {@code Log} se encarga de registrar información sobre el estado del
+ * sistema en un archivo de log. Implementa {@code Runnable} para permitir
+ * que se ejecute en un hilo separado y registre periódicamente el estado
+ * del sistema, incluyendo estadísticas sobre las transiciones y los clientes.
+ *
+ * La clase usa un archivo de log denominado {@code log.txt}, y los datos se
+ * escriben en dicho archivo de forma periódica con un intervalo de 250 ms,
+ * o al finalizar el proceso. La escritura pasa por un
+ * {@link RegistroAsincrono}: el hilo del log solo copia el texto a un anillo en
+ * memoria y otro hilo hace la E/S en lotes.
+ */
+public class Log implements Runnable {
+  /** Tipo de los registros binarios de disparo: {@code R1 <instante> <transicion>}. */
+  public static final int REGISTRO_DISPARO = 1;
+  private static final int CAPACIDAD_REGISTRO = 1 << 20; // bytes del anillo del registro
+  private static final int LARGO_BLOQUE = 8192; // caracteres por entrada al volcar la secuencia
+  private final long tiempo; // El tiempo de inicio del proceso de registro, en milisegundos.
+  private RedDePetri redDePetri;
+  private final MetricasDeDisparo metricas; // null si el monitor no mide latencias
+  private final VerificadorEnLinea verificador; // null si los invariantes se validan al final
+  private final RegistroAsincrono registro; // escribe log.txt desde su propio hilo
+  private final StringBuilder texto = new StringBuilder(1024); // se reusa para cada muestra
+  private final InstantaneaDeMarcado instantanea; // se reusa para cada muestra
+  private final int[] marcadoInicial; // para calcular los invariantes si la red no los trae
+
+  /**
+   * Constructor de la clase {@code Log}, inicializa el tiempo de inicio del
+   * proceso.
+   */
+  public Log(RedDePetri redDePetri) {
+    this(redDePetri, null);
+  }
+
+  /**
+   * Constructor de la clase {@code Log} que además agrega al informe final el
+   * resumen de latencias del monitor.
+   *
+   * @param metricas histogramas del monitor, o {@code null}.
+   */
+  public Log(RedDePetri redDePetri, MetricasDeDisparo metricas) {
+    this(redDePetri, metricas, null);
+  }
+
+  /**
+   * Constructor de la clase {@code Log} que además informa en cada muestra el
+   * avance de la validación en línea, y la usa para el informe final en lugar
+   * de recorrer la secuencia.
+   *
+   * Si la red no tiene invariantes asociados ({@link RedDePetri#setInvariantes})
+   * se calculan al final, con el marcado que tiene la red al crear el
+   * {@code Log}, que debe ser el inicial.
+   *
+   * @param metricas    histogramas del monitor, o {@code null}.
+   * @param verificador verificador suscripto a la red, o {@code null}.
+   */
+  public Log(RedDePetri redDePetri, MetricasDeDisparo metricas, VerificadorEnLinea verificador) {
+    tiempo = System.currentTimeMillis();
+    this.redDePetri = redDePetri;
+    this.metricas = metricas;
+    this.verificador = verificador;
+    this.instantanea = new InstantaneaDeMarcado(redDePetri.getMarcado().length);
+    this.marcadoInicial = redDePetri.getInvariantes() == null ? redDePetri.getMarcado().clone() : null;
+    try {
+      registro = new RegistroAsincrono(Paths.get("log.txt"), RegistroAsincrono.Formato.TEXTO, CAPACIDAD_REGISTRO);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Imprime la secuencia de transiciones al archivo de log, recorriendo el
+   * diario con un cursor en lugar de armar la cadena completa.
+   */
+  private void imprimirTransiciones() {
+    println("secuencia de transiciones:");
+    if (!redDePetri.getDiario().retiene()) {
+      println("(no retenida: " + redDePetri.getDiario().tamanio() + " disparos)");
+      return;
+    }
+    DiarioDeTransiciones.Cursor cursor = redDePetri.getDiario().cursor();
+    texto.setLength(0);
+    while (cursor.haySiguiente()) {
+      texto.append('T').append(cursor.siguiente());
+      if (texto.length() >= LARGO_BLOQUE) {
+        registro.escribirEsperando(texto);
+        texto.setLength(0);
+      }
+    }
+    registro.escribirEsperando(texto.append('\n'));
+  }
+
+  // El informe final no puede perder lineas: espera si el anillo esta lleno
+  private void println(String linea) {
+    registro.escribirEsperando(linea + "\n");
+  }
+
+  private void println() {
+    registro.escribirEsperando("\n");
+  }
+
+  /**
+   * Agrega al log un registro binario por cada disparo de la red, con el
+   * instante y la transición, suscribiéndose como observador. Debe llamarse
+   * antes de que la red empiece a disparar. No bloquea a quien dispara: si el
+   * anillo del registro está lleno el disparo no se anota en el log (la
+   * secuencia completa sigue en el diario de la red).
+   */
+  public void registrarDisparos() {
+    redDePetri.agregarObservador((transicion, instante) -> registro.registrar(REGISTRO_DISPARO, instante,
+        transicion));
+  }
+
+  /**
+   * Metodo que ejecuta el hilo y registra información sobre el estado del sistema
+   * en el archivo de
+   * log. Se ejecuta en un ciclo hasta que {@code Monitor} indique que el proceso
+   * ha terminado.
+   */
+  @Override
+  public void run() {
+    while (true) {
+      if (redDePetri.isTermino()) {
+        long[] disparos = redDePetri.getDisparos(); // contadores de la red, sin recorrer la secuencia
+        println(
+            "tiempo en milis: "
+                + (System.currentTimeMillis() - tiempo)
+                + "\n"
+                + "clientes atendidos por el agente 1: "
+                + disparos[2]
+                + "\n"
+                + "clientes atendidos por el agente 2: "
+                + disparos[3]
+                + "\n"
+                + "Cantidad de clientes que confirmaron: "
+                + disparos[6]
+                + "\n"
+                + "Cantidad de clientes que Cancelaron: "
+                + disparos[7]
+                + "\n"
+                + "clientes que salieron en total: "
+                + redDePetri.getClientesSalientes()
+                + "\n");
+        imprimirTransiciones();
+        if (metricas != null) {
+          println();
+          println("latencias de fireTransition por transicion y fase:");
+          registro.escribirEsperando(metricas.resumen());
+          println();
+          println("senales y despertares por transicion:");
+          registro.escribirEsperando(metricas.resumenDeDespertares());
+        }
+        comprobarSecuencia();
+        try {
+          registro.close();
+        } catch (IOException e) {
+          throw new RuntimeException(e);
+        }
+        return;
+      }
+      // Copia consistente del marcado, sin frenar a los hilos que disparan. La
+      // muestra se arma en un StringBuilder reusado y no bloquea: si el anillo
+      // estuviera lleno se descarta
+      InstantaneaDeMarcado m = redDePetri.getInstantanea(instantanea);
+      texto.setLength(0);
+      texto.append("Clientes por entrar: ").append(m.getTokens(0)).append('\n')
+          .append("Clientes en puerta: ").append(m.getTokens(2)).append('\n')
+          .append("Clientes esperando para reservar: ").append(m.getTokens(3)).append('\n')
+          .append("Clientes atendiendose por agente 1: ").append(m.getTokens(5)).append('\n')
+          .append("Clientes atendiendose por agente 2: ").append(m.getTokens(8)).append('\n')
+          .append("Clientes esperando para cancelar o confirmar reserva: ").append(m.getTokens(9)).append('\n')
+          .append("Clientes confirmando: ").append(m.getTokens(11)).append('\n')
+          .append("Clientes pagando: ").append(m.getTokens(13)).append('\n')
+          .append("Clientes cancelando: ").append(m.getTokens(12)).append('\n')
+          .append("Clientes saliente: ").append(m.getClientesSalientes()).append('\n');
+      if (verificador != null) {
+        texto.append("Invariantes completos: ").append(verificador.getTotal())
+            .append(" (en curso: ").append(verificador.getEnCurso()).append(")\n");
+        if (verificador.huboViolaciones()) {
+          texto.append("Disparos fuera de invariante: ").append(verificador.getSobrantes())
+              .append(" (el primero, T").append(verificador.getTransicionPrimeraViolacion())
+              .append(" en la posicion ").append(verificador.getPosicionPrimeraViolacion()).append(")\n");
+        }
+      }
+      texto.append('\n');
+      registro.escribir(texto);
+      try {
+        Thread.sleep(250); // Duracion del proceso
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+  }
+
+  /**
+   * Valida la secuencia de disparos contra los T-invariantes de la agencia e
+   * imprime el mismo informe que {@code PetriFlightAnalyzer.py}. Si hay un
+   * verificador en línea se usan sus resultados; si no, se recorre el diario una
+   * vez.
+   */
+  private void comprobarSecuencia() {
+    println();
+    // Los invariantes se calculan desde la matriz de incidencia, en el mismo
+    // orden en que los recibio el verificador
+    InvariantesDeRed deLaRed = redDePetri.getInvariantes();
+    if (deLaRed == null) {
+      deLaRed = InvariantesDeRed.calcular(redDePetri.getMatrizDispersa(), marcadoInicial);
+    }
+    int[][] invariantes = deLaRed.getSecuenciasDeDisparo();
+    long[] cantidades = new long[invariantes.length];
+    String[] nombres = new String[cantidades.length];
+    boolean valida;
+    long total;
+    if (verificador != null) {
+      valida = verificador.esValida();
+      total = verificador.getTotal();
+      for (int i = 0; i < cantidades.length; i++) {
+        cantidades[i] = verificador.getCantidad(i);
+        nombres[i] = verificador.getNombre(i);
+      }
+    } else {
+      ValidadorDeInvariantes validador = new ValidadorDeInvariantes(redDePetri.getCantidadDeTransiciones(),
+          invariantes);
+      validador.procesar(redDePetri.getDiario());
+      valida = validador.esValida();
+      total = validador.getTotal();
+      for (int i = 0; i < cantidades.length; i++) {
+        cantidades[i] = validador.getCantidad(i);
+        nombres[i] = validador.getNombre(i);
+      }
+    }
+    if (!valida) {
+      println("El test finalizo FAIL, han sobrado transiciones");
+      return;
+    }
+    // Cada invariante se clasifica por el agente (T2 es el agente 1) y por si
+    // el cliente confirma (T6), y se lista en el orden del script: agente 2
+    // cancelar, agente 2 confirmar, agente 1 cancelar, agente 1 confirmar
+    long[] porCamino = new long[4];
+    int[] orden = new int[cantidades.length];
+    for (int i = 0; i < cantidades.length; i++) {
+      int camino = (contiene(invariantes[i], 2) ? 2 : 0) + (contiene(invariantes[i], 6) ? 1 : 0);
+      porCamino[camino] += cantidades[i];
+      orden[i] = camino;
+    }
+    long agente2Cancelar = porCamino[0];
+    long agente2Confirmar = porCamino[1];
+    long agente1Cancelar = porCamino[2];
+    long agente1Confirmar = porCamino[3];
+    long clientesAgente1 = agente1Cancelar + agente1Confirmar;
+    long clientesAgente2 = agente2Cancelar + agente2Confirmar;
+    long clientesCancelar = agente2Cancelar + agente1Cancelar;
+    long clientesConfirmar = agente2Confirmar + agente1Confirmar;
+    String separador = "-".repeat(30);
+
+    println(separador);
+    println("El test finalizo OK");
+    println("Cantidad de invariantes: " + total);
+    println(separador);
+    for (int camino = 0; camino < porCamino.length; camino++) {
+      for (int i = 0; i < cantidades.length; i++) {
+        if (orden[i] == camino) {
+          println("('" + nombres[i] + "', " + cantidades[i] + ")");
+        }
+      }
+    }
+    println(separador);
+    println("Cantidad de clientes atendidos por Agente 1 : " + clientesAgente1);
+    println("Porcentaje atendido por Agente 1 : " + porcentaje(clientesAgente1, clientesAgente2) + " %");
+    println(separador);
+    println("Cantidad de clientes atendidos por Agente 2 : " + clientesAgente2);
+    println("Porcentaje atendido por Agente 2 : " + porcentaje(clientesAgente2, clientesAgente1) + " %");
+    println(separador);
+    println("Cantidad de clientes que confirmaron : " + clientesConfirmar);
+    println("Porcentaje de clientes que confirmaron : " + porcentaje(clientesConfirmar, clientesCancelar) + " %");
+    println(separador);
+    println("Cantidad de clientes que cancelaron: " + clientesCancelar);
+    println("Porcentaje de clientes que cancelaron : " + porcentaje(clientesCancelar, clientesConfirmar) + " %");
+    println(separador);
+  }
+
+  private static boolean contiene(int[] invariante, int transicion) {
+    for (int t : invariante) {
+      if (t == transicion) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Como el script: la proporcion se redondea a un decimal y recien despues se
+  // multiplica por 100
+  private static double porcentaje(long parte, long resto) {
+    if (parte + resto == 0) {
+      return 0;
+    }
+    double proporcion = new BigDecimal((double) parte / (parte + resto)).setScale(1, RoundingMode.HALF_EVEN)
+        .doubleValue();
+    return proporcion * 100;
+  }
+}
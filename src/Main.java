@@ -1,13 +1,8 @@
 import java.util.ArrayList;
 
-import monitor.Monitor;
+import monitor.MonitorInterface;
 import pantalla.PantallaCarga;
-import procesos.AtencionAgente;
-import procesos.Cancelacion;
-import procesos.ConfirmacionYPago;
-import procesos.EntradaDeClientes;
-import procesos.NumeroDeAgente;
-import procesos.Salida;
+import petri.PoliticaAgenciaVuelo;
 
 /**
  * Clase principal que gestiona la ejecución del programa de la agencia de
@@ -15,8 +10,14 @@ import procesos.Salida;
  * la selección de la política, la inicialización de la matriz de incidencia,
  * el marcado inicial y la creación y ejecución de los hilos que simulan las
  * diferentes tareas de la agencia.
+ *
+ * Uso: {@code java Main [cantidadDeClientes [politica [hilos]]]}, donde
+ * {@code hilos} es la cantidad de hilos de cada proceso con el formato de
+ * {@link DotacionDeHilos#desdeTexto(String)} (por defecto, las constantes de
+ * esta clase).
  */
 public class Main {
+  private static final String USO = "Uso: java Main [cantidadDeClientes [politica [hilos]]], con politica 1 (balanceada) o 2 (priorizada)";
   public static final int CANTIDAD_HILOS_AGENTE_1 = 1;
   public static final int CANTIDAD_HILOS_AGENTE_2 = 1;
   public static final int CANTIDAD_HILOS_CANCELACION = 1;
@@ -26,7 +27,16 @@ public class Main {
 
   public static void main(String[] args) {
 
-    ConfiguracionInicial configuracionInicial = new ConfiguracionInicial();
+    int clientes = args.length > 0 ? Integer.parseInt(args[0]) : ConfiguracionInicial.CLIENTES_POR_DEFECTO;
+    int politica = args.length > 1 ? Integer.parseInt(args[1]) : ConfiguracionInicial.POLITICA_POR_DEFECTO;
+    DotacionDeHilos dotacion = args.length > 2 ? DotacionDeHilos.desdeTexto(args[2]) : DotacionDeHilos.PREDETERMINADA;
+    if (!PoliticaAgenciaVuelo.existe(politica)) {
+      System.out.println("Politica inexistente: " + politica);
+      System.out.println(USO);
+      System.exit(2);
+    }
+
+    ConfiguracionInicial configuracionInicial = new ConfiguracionInicial(clientes, politica);
 
     {
       PantallaCarga pantalla = new PantallaCarga();
@@ -34,40 +44,19 @@ public class Main {
       pantalla.setResizable(false);
     } // parte gráfica de pantalla de carga
 
+    MonitorInterface monitor = configuracionInicial.getMonitor();
     OurThreadFactory factory = new OurThreadFactory();
-    ArrayList<Thread> hilos = new ArrayList<>();
-
-    // 5 hilos encargados de la generacion y entrada de clientes
-    for (int i = 0; i < CANTIDAD_HILOS_GEN_CLIENTES; i++) {
-      hilos.add(factory.newThread(new EntradaDeClientes(Monitor.getInstance())));
-    }
-
-    // 1 hilo por agente
-    for (int i = 0; i < CANTIDAD_HILOS_AGENTE_1; i++) {
-      hilos.add(factory.newThread(new AtencionAgente(NumeroDeAgente.AGENTE1, Monitor.getInstance())));
-    }
-
-    for (int i = 0; i < CANTIDAD_HILOS_AGENTE_2; i++) {
-      hilos.add(factory.newThread(new AtencionAgente(NumeroDeAgente.AGENTE2, Monitor.getInstance())));
-    }
-
-    // 1 Hilo encargado de la cancelacion
-    for (int i = 0; i < CANTIDAD_HILOS_CANCELACION; i++) {
-      hilos.add(factory.newThread(new Cancelacion(Monitor.getInstance())));
-    }
-
-    // 1 Hilo encargado de la confirmacion y pago
-    for (int i = 0; i < CANTIDAD_HILOS_CONFIRMACION; i++) {
-      hilos.add(factory.newThread(new ConfirmacionYPago(Monitor.getInstance())));
-    }
-
-    // 1 Hilo encargado de la confirmacion y pago
-    for (int i = 0; i < CANTIDAD_HILOS_SALIDA; i++) {
-      hilos.add(factory.newThread(new Salida(Monitor.getInstance())));
-    }
+    // Hilos de entrada de clientes, de cada agente, de cancelacion, de
+    // confirmacion y pago, y de salida
+    ArrayList<Thread> hilos = new ArrayList<>(dotacion.crearHilos(monitor, factory));
 
     // Hilo encargado del Log
-    hilos.add(factory.newThread(new Log(configuracionInicial.getRedDePetri())));
+    Log log = new Log(configuracionInicial.getRedDePetri(), configuracionInicial.getMetricas(),
+        configuracionInicial.getVerificador());
+    if (configuracionInicial.registraDisparos()) {
+      log.registrarDisparos();
+    }
+    hilos.add(factory.newThread(log));
 
     // Inicializacion de los hilos
     for (Thread h : hilos) {
@@ -80,6 +69,7 @@ public class Main {
         throw new RuntimeException(e);
       }
     }
+    configuracionInicial.cerrarTraza();
     System.out.println("Fin de la ejecucion");
   }
 
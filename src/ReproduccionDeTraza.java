@@ -0,0 +1,126 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import petri.DiarioDeTransiciones;
+import petri.MatrizIncidenciaDispersa;
+import petri.PoliticaAgenciaVuelo;
+import petri.PoliticaInexistenteException;
+import petri.RedDePetri;
+import registro.EscritorDeTraza;
+import registro.LectorDeTraza;
+
+/**
+ * Reproduce una traza grabada por {@link EscritorDeTraza} sobre una red de la
+ * agencia nueva, lo más rápido posible: un solo hilo, sin monitor, sin ventanas
+ * de tiempo y sin dormir. En cada paso comprueba que la transición esté
+ * sensibilizada antes de dispararla, y al final que el marcado y los disparos
+ * de cada transición coincidan con los del cierre de la traza. Sirve como
+ * prueba de regresión de {@link RedDePetri} y como benchmark del camino de
+ * disparo. Cada disparo se hace con su instante original, así que la red no
+ * consulta el reloj.
+ *
+ * El marcado inicial se despeja de la ecuación de estado con el cierre de la
+ * traza (M0 = Mf - C·disparos) y se comprueba contra el hash del encabezado; si
+ * la traza está incompleta hay que indicar la cantidad de clientes.
+ *
+ * Uso: {@code java ReproduccionDeTraza traza.bin [repeticiones [clientes]]}.
+ * Termina con código 1 si la traza no se puede reproducir.
+ */
+public class ReproduccionDeTraza {
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.out.println("Uso: java ReproduccionDeTraza traza.bin [repeticiones [clientes]]");
+      System.exit(2);
+    }
+    LectorDeTraza traza = new LectorDeTraza(Paths.get(args[0]));
+    int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+    if (!PoliticaAgenciaVuelo.existe(traza.getPolitica())) {
+      fallar("La traza usa una politica inexistente: " + traza.getPolitica());
+    }
+
+    // Solo se usan la matriz y las ventanas, que no dependen de los clientes
+    RedDePetri agencia = new ConfiguracionInicial(1, traza.getPolitica()).getRedDePetri();
+    MatrizIncidenciaDispersa matriz = agencia.getMatrizDispersa();
+    if (matriz.getCantidadLugares() != traza.getCantidadLugares()
+        || matriz.getCantidadTransiciones() != traza.getCantidadTransiciones()) {
+      fallar("La traza no es de la red de la agencia: tiene " + traza.getCantidadLugares() + " lugares y "
+          + traza.getCantidadTransiciones() + " transiciones.");
+    }
+    int[] marcadoInicial;
+    if (args.length > 2) {
+      marcadoInicial = new ConfiguracionInicial(Integer.parseInt(args[2])).getRedDePetri().getMarcado().clone();
+    } else if (traza.estaCompleta()) {
+      marcadoInicial = marcadoInicial(matriz, traza.getMarcadoFinal(), traza.getDisparosFinales());
+    } else {
+      fallar("La traza esta incompleta: indique la cantidad de clientes.");
+      return;
+    }
+    if (EscritorDeTraza.hashDeRed(matriz, marcadoInicial) != traza.getHashDeRed()) {
+      fallar("La traza fue grabada con otra red o con otro marcado inicial.");
+    }
+
+    for (int i = 0; i < repeticiones; i++) {
+      reproducir(traza, matriz, marcadoInicial, agencia);
+    }
+  }
+
+  /** Reproduce la traza una vez sobre una red nueva e imprime el resultado. */
+  private static void reproducir(LectorDeTraza traza, MatrizIncidenciaDispersa matriz, int[] marcadoInicial,
+      RedDePetri agencia) {
+    RedDePetri red;
+    try {
+      red = new RedDePetri(matriz, marcadoInicial.clone(), new PoliticaAgenciaVuelo(traza.getPolitica()),
+          agencia.getAlfayBeta(), DiarioDeTransiciones.sinRetener());
+    } catch (PoliticaInexistenteException e) {
+      throw new RuntimeException(e); // la politica del encabezado ya se valido
+    }
+    traza.reiniciar();
+    long inicio = System.nanoTime();
+    while (traza.siguiente()) {
+      int t = traza.getTransicion();
+      if (!red.sensibilizado(t)) {
+        fallar("El disparo " + (traza.getLeidos() - 1) + " (T" + t + ") no esta sensibilizado. Marcado: "
+            + Arrays.toString(red.getMarcado()));
+      }
+      red.dispararTransicion(t, traza.getInstanteNanos());
+    }
+    long duracion = System.nanoTime() - inicio;
+
+    if (traza.estaCompleta()) {
+      if (traza.getLeidos() != traza.getCantidadDisparos()) {
+        fallar("Se leyeron " + traza.getLeidos() + " disparos de " + traza.getCantidadDisparos() + ".");
+      }
+      if (!Arrays.equals(red.getMarcado(), traza.getMarcadoFinal())) {
+        fallar("El marcado final no coincide: " + Arrays.toString(red.getMarcado()) + " en lugar de "
+            + Arrays.toString(traza.getMarcadoFinal()));
+      }
+      if (!Arrays.equals(red.getDisparos(), traza.getDisparosFinales())) {
+        fallar("Los disparos por transicion no coinciden: " + Arrays.toString(red.getDisparos())
+            + " en lugar de " + Arrays.toString(traza.getDisparosFinales()));
+      }
+    }
+    System.out.println("disparos reproducidos: " + traza.getLeidos() + " en " + duracion / 1_000_000L + " ms ("
+        + (long) (traza.getLeidos() / (duracion / 1e9)) + " disparos/s)"
+        + (traza.estaCompleta() ? ", marcado final OK" : ", traza incompleta"));
+  }
+
+  // Despeja M0 de la ecuacion de estado Mf = M0 + C * disparos
+  private static int[] marcadoInicial(MatrizIncidenciaDispersa matriz, int[] marcadoFinal, long[] disparos) {
+    int[] marcado = marcadoFinal.clone();
+    int[] lugares = matriz.getLugaresDeArcos();
+    int[] valores = matriz.getValoresPorColumna();
+    for (int t = 0; t < matriz.getCantidadTransiciones(); t++) {
+      for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+        marcado[lugares[i]] = Math.toIntExact(marcado[lugares[i]] - valores[i] * disparos[t]);
+      }
+    }
+    return marcado;
+  }
+
+  private static void fallar(String mensaje) {
+    System.out.println(mensaje);
+    System.exit(1);
+  }
+}
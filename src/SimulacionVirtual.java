@@ -0,0 +1,58 @@
+import petri.RedDePetri;
+import simulacion.SimuladorDeEventos;
+
+/**
+ * Ejecuta la agencia de vuelos en tiempo virtual, con el simulador de eventos
+ * discretos de un solo hilo: los mismos procesos, tiempos de proceso, ventanas
+ * y política que {@link Main}, sin dormir. Sirve para simular muchos clientes en
+ * poco tiempo.
+ *
+ * Uso: {@code java SimulacionVirtual [cantidadDeClientes]}
+ */
+public class SimulacionVirtual {
+
+  public static void main(String[] args) {
+    int clientes = args.length > 0 ? Integer.parseInt(args[0]) : ConfiguracionInicial.CLIENTES_POR_DEFECTO;
+
+    ConfiguracionInicial configuracionInicial = new ConfiguracionInicial(clientes);
+    RedDePetri redDePetri = configuracionInicial.getRedDePetri();
+    SimuladorDeEventos simulador = new SimuladorDeEventos(redDePetri);
+
+    // Los mismos procesos e hilos que lanza Main
+    DotacionDeHilos.PREDETERMINADA.agregarProcesos(simulador);
+
+    long inicio = System.currentTimeMillis();
+    long disparos = simulador.ejecutar();
+    long real = System.currentTimeMillis() - inicio;
+
+    long[] cuenta = redDePetri.getDisparos();
+
+    System.out.println(
+        "tiempo virtual en milis: "
+            + simulador.getTiempoVirtualNanos() / 1_000_000L
+            + "\n"
+            + "tiempo real en milis: "
+            + real
+            + "\n"
+            + "transiciones disparadas: "
+            + disparos
+            + "\n"
+            + "clientes atendidos por el agente 1: "
+            + cuenta[2]
+            + "\n"
+            + "clientes atendidos por el agente 2: "
+            + cuenta[3]
+            + "\n"
+            + "Cantidad de clientes que confirmaron: "
+            + cuenta[6]
+            + "\n"
+            + "Cantidad de clientes que Cancelaron: "
+            + cuenta[7]
+            + "\n"
+            + "clientes que salieron en total: "
+            + redDePetri.getClientesSalientes());
+    if (!redDePetri.isTermino()) {
+      System.out.println("La simulacion se detuvo sin que la red terminara.");
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package monitor;
+
+import java.util.HashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Grupo de transiciones que comparten lugares de entrada (directa o
+ * indirectamente), con su propio mutex, sus variables de condición y la
+ * decisión de la política sobre cuál de ellas puede dispararse. Los lugares de
+ * entrada de un cluster solo pierden tokens bajo su mutex.
+ *
+ * Para armar candidatos con operaciones por palabra, el cluster guarda las
+ * palabras de 64 bits que ocupan sus transiciones en los bitsets de la red y,
+ * para cada una, la máscara con sus bits.
+ */
+class ClusterDeConflicto {
+    final Lock mutex; // creado por la estrategia de sincronizacion del monitor
+    final HashMap<Integer, Condition> condiciones = new HashMap<>(); // una llave por transicion del cluster
+    final int[] transiciones; // transiciones del cluster, en orden creciente
+    int transicionAdespertar = -1; // -1 , se permiten todos
+    final int[] palabras; // indices de las palabras con transiciones del cluster, en orden creciente
+    final long[] mascaras; // bits del cluster en cada una de esas palabras
+    final long[] candidatos; // bitset reutilizable (hasta la ultima palabra del cluster)
+
+    ClusterDeConflicto(int[] transiciones, Lock mutex) {
+        this.transiciones = transiciones;
+        this.mutex = mutex;
+        for (int t : transiciones) {
+            condiciones.put(t, mutex.newCondition());
+        }
+
+        int cantidadPalabras = 0;
+        for (int i = 0; i < transiciones.length; i++) {
+            if (i == 0 || transiciones[i] >>> 6 != transiciones[i - 1] >>> 6)
+                cantidadPalabras++;
+        }
+        palabras = new int[cantidadPalabras];
+        mascaras = new long[cantidadPalabras];
+        int k = -1;
+        for (int i = 0; i < transiciones.length; i++) {
+            if (i == 0 || transiciones[i] >>> 6 != transiciones[i - 1] >>> 6)
+                palabras[++k] = transiciones[i] >>> 6;
+            mascaras[k] |= 1L << transiciones[i];
+        }
+        candidatos = new long[transiciones.length == 0 ? 0 : (transiciones[transiciones.length - 1] >>> 6) + 1];
+    }
+}
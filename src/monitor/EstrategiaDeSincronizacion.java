@@ -0,0 +1,34 @@
+package monitor;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Estrategia de exclusión mutua y espera del {@link Monitor}: crea el mutex de
+ * cada cluster de conflicto (uno solo en modo global), del que salen también
+ * sus variables de condición. Se elige al crear el monitor.
+ */
+@FunctionalInterface
+public interface EstrategiaDeSincronizacion {
+
+    /**
+     * Lock justo: los hilos entran en orden de llegada (comportamiento original).
+     * Evita la inanición a costa de un traspaso más lento bajo contención.
+     */
+    EstrategiaDeSincronizacion JUSTA = () -> new ReentrantLock(true);
+
+    /**
+     * Lock no justo: un hilo que llega puede adelantarse a los que esperan. Da
+     * más disparos por segundo bajo contención.
+     */
+    EstrategiaDeSincronizacion NO_JUSTA = () -> new ReentrantLock(false);
+
+    /**
+     * Lock no justo que gira un tiempo adaptativo antes de bloquearse, para
+     * secciones críticas cortas como las del monitor.
+     */
+    EstrategiaDeSincronizacion GIRO_Y_ESPERA = MutexGiraYEspera::new;
+
+    /** Crea un mutex nuevo. */
+    Lock nuevoMutex();
+}
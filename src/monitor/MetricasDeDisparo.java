@@ -0,0 +1,282 @@
+package monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogramas de latencia por transición y por fase de
+ * {@link Monitor#fireTransition(int)}. Los baldes son log-lineales, al estilo
+ * HdrHistogram: 8 subdivisiones por potencia de 2, con un error relativo de a
+ * lo sumo 12,5 %, hasta unos 70 minutos. Registrar una muestra es un puñado de
+ * operaciones atómicas sobre arreglos preasignados: no toma locks ni crea
+ * objetos.
+ *
+ * También cuenta, por transición, cuántas señales se enviaron a su condición,
+ * cuántos hilos dispararon después de haber sido despertados y cuántos
+ * despertaron y tuvieron que volver a dormir (por falta de tokens, por la
+ * ventana alfa o por la política). La eficiencia de despertar es la proporción
+ * de señales que terminaron en un disparo.
+ *
+ * Ocupa unos 10 KB por transición, por lo que el monitor solo las lleva si se
+ * habilitan.
+ */
+public class MetricasDeDisparo {
+
+    /** Fases en las que se divide el tiempo de un disparo. */
+    public enum Fase {
+        ADQUISICION, // esperando tomar el mutex
+        ESPERA_CONDICION, // dormido en la condicion de la transicion (sin tokens o por la politica)
+        ESPERA_ALFA, // dormido hasta que se abra la ventana alfa
+        LOCK_TOMADO // con el mutex tomado
+    }
+
+    private static final int FASES = Fase.values().length;
+    private static final int SUBBALDES_BITS = 3;
+    private static final int SUBBALDES = 1 << SUBBALDES_BITS;
+    private static final int EXPONENTE_MAXIMO = 42;
+    private static final int BALDES = SUBBALDES + (EXPONENTE_MAXIMO - SUBBALDES_BITS + 1) * SUBBALDES;
+
+    private final int cantidadTransiciones;
+    private final AtomicLongArray baldes; // [transicion][fase][balde]
+    private final AtomicLongArray cantidades; // [transicion][fase]
+    private final AtomicLongArray sumas; // [transicion][fase], en nanosegundos
+    private final AtomicLongArray maximos; // [transicion][fase], en nanosegundos
+    private final AtomicLongArray senales; // [transicion], hilos senalados (uno por signal, todos por signalAll)
+    private final AtomicLongArray disparosTrasDespertar; // [transicion]
+    private final AtomicLongArray reEsperas; // [transicion], despertares que volvieron a dormir
+
+    public MetricasDeDisparo(int cantidadTransiciones) {
+        this.cantidadTransiciones = cantidadTransiciones;
+        baldes = new AtomicLongArray(cantidadTransiciones * FASES * BALDES);
+        cantidades = new AtomicLongArray(cantidadTransiciones * FASES);
+        sumas = new AtomicLongArray(cantidadTransiciones * FASES);
+        maximos = new AtomicLongArray(cantidadTransiciones * FASES);
+        senales = new AtomicLongArray(cantidadTransiciones);
+        disparosTrasDespertar = new AtomicLongArray(cantidadTransiciones);
+        reEsperas = new AtomicLongArray(cantidadTransiciones);
+    }
+
+    public int getCantidadTransiciones() {
+        return cantidadTransiciones;
+    }
+
+    /**
+     * Registra una muestra.
+     *
+     * @param transicion transición que se intentaba disparar.
+     * @param fase       fase medida.
+     * @param nanos      duración, en nanosegundos.
+     */
+    public void registrar(int transicion, Fase fase, long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        int serie = transicion * FASES + fase.ordinal();
+        baldes.getAndIncrement(serie * BALDES + balde(nanos));
+        cantidades.getAndIncrement(serie);
+        sumas.getAndAdd(serie, nanos);
+        long maximo = maximos.get(serie);
+        while (nanos > maximo && !maximos.compareAndSet(serie, maximo, nanos))
+            maximo = maximos.get(serie);
+    }
+
+    /** Registra señales enviadas a la condición de la transición. */
+    public void registrarSenales(int transicion, long cantidad) {
+        senales.getAndAdd(transicion, cantidad);
+    }
+
+    /** Registra un disparo de un hilo que había dormido al menos una vez. */
+    public void registrarDisparoTrasDespertar(int transicion) {
+        disparosTrasDespertar.getAndIncrement(transicion);
+    }
+
+    /** Registra un hilo que despertó y volvió a dormir. */
+    public void registrarReEspera(int transicion) {
+        reEsperas.getAndIncrement(transicion);
+    }
+
+    public long getSenales(int transicion) {
+        return senales.get(transicion);
+    }
+
+    public long getDisparosTrasDespertar(int transicion) {
+        return disparosTrasDespertar.get(transicion);
+    }
+
+    public long getReEsperas(int transicion) {
+        return reEsperas.get(transicion);
+    }
+
+    /**
+     * Proporción de las señales enviadas a la transición que terminaron en un
+     * disparo (1 si no hubo señales).
+     */
+    public double getEficienciaDeDespertar(int transicion) {
+        long enviadas = getSenales(transicion);
+        return enviadas == 0 ? 1 : (double) getDisparosTrasDespertar(transicion) / enviadas;
+    }
+
+    /** Eficiencia de despertar de toda la red (1 si no hubo señales). */
+    public double getEficienciaDeDespertar() {
+        long enviadas = 0;
+        long disparos = 0;
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            enviadas += getSenales(t);
+            disparos += getDisparosTrasDespertar(t);
+        }
+        return enviadas == 0 ? 1 : (double) disparos / enviadas;
+    }
+
+    /** Cantidad de muestras de la transición en la fase. */
+    public long getCantidad(int transicion, Fase fase) {
+        return cantidades.get(transicion * FASES + fase.ordinal());
+    }
+
+    /** Suma de las muestras, en nanosegundos. */
+    public long getTotalNanos(int transicion, Fase fase) {
+        return sumas.get(transicion * FASES + fase.ordinal());
+    }
+
+    /** Promedio de las muestras, en nanosegundos (0 si no hay). */
+    public double getPromedioNanos(int transicion, Fase fase) {
+        long cantidad = getCantidad(transicion, fase);
+        return cantidad == 0 ? 0 : (double) getTotalNanos(transicion, fase) / cantidad;
+    }
+
+    /** Máxima muestra registrada, en nanosegundos. */
+    public long getMaximoNanos(int transicion, Fase fase) {
+        return maximos.get(transicion * FASES + fase.ordinal());
+    }
+
+    /**
+     * Devuelve el percentil pedido, como el límite superior del balde en el que
+     * cae (0 si no hay muestras).
+     *
+     * @param percentil entre 0 y 100.
+     */
+    public long getPercentilNanos(int transicion, Fase fase, double percentil) {
+        int base = (transicion * FASES + fase.ordinal()) * BALDES;
+        long total = 0;
+        for (int b = 0; b < BALDES; b++)
+            total += baldes.get(base + b);
+        if (total == 0)
+            return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * total));
+        long acumulado = 0;
+        for (int b = 0; b < BALDES; b++) {
+            acumulado += baldes.get(base + b);
+            if (acumulado >= objetivo)
+                return Math.min(limiteInferior(b + 1) - 1, getMaximoNanos(transicion, fase));
+        }
+        return getMaximoNanos(transicion, fase);
+    }
+
+    /** Cantidad de muestras de la fase, sumando todas las transiciones. */
+    public long getCantidad(Fase fase) {
+        long cantidad = 0;
+        for (int t = 0; t < cantidadTransiciones; t++)
+            cantidad += getCantidad(t, fase);
+        return cantidad;
+    }
+
+    /** Promedio de las muestras de la fase en toda la red, en nanosegundos. */
+    public double getPromedioNanos(Fase fase) {
+        long cantidad = 0;
+        long total = 0;
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            cantidad += getCantidad(t, fase);
+            total += getTotalNanos(t, fase);
+        }
+        return cantidad == 0 ? 0 : (double) total / cantidad;
+    }
+
+    /**
+     * Percentil de la fase en toda la red, uniendo los histogramas de todas las
+     * transiciones (0 si no hay muestras).
+     *
+     * @param percentil entre 0 y 100.
+     */
+    public long getPercentilNanos(Fase fase, double percentil) {
+        long[] unidos = new long[BALDES];
+        long total = 0;
+        long maximo = 0;
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            int base = (t * FASES + fase.ordinal()) * BALDES;
+            for (int b = 0; b < BALDES; b++) {
+                unidos[b] += baldes.get(base + b);
+                total += baldes.get(base + b);
+            }
+            maximo = Math.max(maximo, getMaximoNanos(t, fase));
+        }
+        if (total == 0)
+            return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(percentil / 100.0 * total));
+        long acumulado = 0;
+        for (int b = 0; b < BALDES; b++) {
+            acumulado += unidos[b];
+            if (acumulado >= objetivo)
+                return Math.min(limiteInferior(b + 1) - 1, maximo);
+        }
+        return maximo;
+    }
+
+    /**
+     * Arma una tabla con, para cada transición y fase con muestras, la cantidad,
+     * el promedio, p50, p99 y el máximo, en microsegundos.
+     */
+    public String resumen() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-5s %-17s %9s %12s %12s %12s %12s%n", "T", "fase", "muestras", "prom(us)",
+                "p50(us)", "p99(us)", "max(us)"));
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            for (Fase fase : Fase.values()) {
+                long cantidad = getCantidad(t, fase);
+                if (cantidad == 0)
+                    continue;
+                sb.append(String.format("%-5s %-17s %9d %12.1f %12.1f %12.1f %12.1f%n", "T" + t, fase, cantidad,
+                        getPromedioNanos(t, fase) / 1e3, getPercentilNanos(t, fase, 50) / 1e3,
+                        getPercentilNanos(t, fase, 99) / 1e3, getMaximoNanos(t, fase) / 1e3));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Arma una tabla con, para cada transición con señales o esperas, las
+     * señales enviadas, los disparos tras despertar, las re-esperas y la
+     * eficiencia de despertar.
+     */
+    public String resumenDeDespertares() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-5s %9s %11s %11s %11s%n", "T", "senales", "disp.desp.", "re-esperas",
+                "eficiencia"));
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            if (getSenales(t) == 0 && getReEsperas(t) == 0 && getDisparosTrasDespertar(t) == 0)
+                continue;
+            sb.append(String.format("%-5s %9d %11d %11d %10.1f%%%n", "T" + t, getSenales(t),
+                    getDisparosTrasDespertar(t), getReEsperas(t), getEficienciaDeDespertar(t) * 100));
+        }
+        sb.append(String.format("eficiencia total: %.1f%%%n", getEficienciaDeDespertar() * 100));
+        return sb.toString();
+    }
+
+    // Valores menores a SUBBALDES van a su propio balde; el resto, a la
+    // subdivision de su potencia de 2
+    private static int balde(long nanos) {
+        if (nanos < SUBBALDES)
+            return (int) nanos;
+        int exponente = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponente > EXPONENTE_MAXIMO)
+            return BALDES - 1;
+        int sub = (int) (nanos >>> (exponente - SUBBALDES_BITS)) & (SUBBALDES - 1);
+        return (exponente - SUBBALDES_BITS + 1) * SUBBALDES + sub;
+    }
+
+    private static long limiteInferior(int balde) {
+        if (balde < SUBBALDES)
+            return balde;
+        if (balde >= BALDES)
+            return Long.MAX_VALUE;
+        int exponente = balde / SUBBALDES + SUBBALDES_BITS - 1;
+        int sub = balde % SUBBALDES;
+        return (long) (SUBBALDES + sub) << (exponente - SUBBALDES_BITS);
+    }
+}
@@ -0,0 +1,9 @@
+package monitor;
+
+/**
+ * Modos de exclusión mutua del {@link Monitor}.
+ */
+public enum ModoExclusion {
+    GLOBAL, // un unico mutex para toda la red (comportamiento original)
+    POR_CLUSTER // un mutex por cluster de conflicto estructural
+}
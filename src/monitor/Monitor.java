@@ -1,14 +1,21 @@
 package monitor;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
 
+import monitor.eventos.DecisionPolitica;
+import monitor.eventos.DespertarEspurio;
+import monitor.eventos.Disparo;
+import monitor.eventos.Espera;
+import monitor.eventos.Senal;
 import petri.AlfaYBeta;
+import petri.MatrizIncidenciaDispersa;
 import petri.RedDePetri;
 
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 
 /**
@@ -16,28 +23,119 @@ import java.util.concurrent.locks.Condition;
  * lógica para disparar
  * transiciones y manejar la exclusión mutua utilizando semáforos y
  * sincronización entre hilos.
+ *
+ * En modo {@link ModoExclusion#GLOBAL} toda la red comparte un único mutex. En
+ * modo {@link ModoExclusion#POR_CLUSTER} cada cluster de conflicto estructural
+ * (transiciones unidas por lugares de entrada compartidos) tiene su propio
+ * mutex y sus propias colas de condición, de modo que partes independientes de
+ * la red disparan en paralelo. Como un cluster solo quita tokens de sus propios
+ * lugares, una transición sensibilizada sigue así mientras se tenga el mutex de
+ * su cluster; los tokens que un disparo deposita en lugares de otros clusters
+ * se notifican después, tomando el mutex de cada cluster afectado de a uno.
+ * Los accesos a la red de Petri se serializan con un lock corto
+ * ({@code registro}) que nunca se toma antes que el de un cluster.
+ *
+ * Los hilos cuya transición está sensibilizada pero todavía no cumplió alfa
+ * esperan sin tiempo límite; el {@link PlanificadorDeVentanas} señala su
+ * condición en el instante en que se abre la ventana.
+ *
+ * Los hilos en espera se cuentan explícitamente por transición, y un bitset
+ * indica qué transiciones tienen al menos uno; los candidatos a despertar salen
+ * de un AND por palabra entre ese bitset, el de sensibilizadas y la máscara del
+ * cluster.
+ *
+ * El tipo de mutex (justo, no justo o con giro antes de bloquear) lo define la
+ * {@link EstrategiaDeSincronizacion} elegida al crear el monitor.
+ *
+ * Cada disparo, espera, señal, despertar espurio y decisión de la política se
+ * emite como un evento de Java Flight Recorder (paquete
+ * {@code monitor.eventos}). Con la grabación apagada los eventos no se
+ * confirman y el costo es despreciable.
  */
 public class Monitor implements MonitorInterface {
-    private final ReentrantLock mutex = new ReentrantLock(true);
+    private static final VarHandle PALABRA = MethodHandles.arrayElementVarHandle(long[].class);
+    // Resultado de estadoDeSensibilizado
+    private static final int SENSIBILIZADA = 0;
+    private static final int SIN_TOKENS = 1;
+    private static final int EN_ALFA = 2;
     private static Monitor m; // Instancia unica del monitor
-    private final HashMap<Integer, Condition> condiciones = new HashMap<>(); // Mapa de llaves para sincronización
     private RedDePetri redDePetri;
     private ArrayList<AlfaYBeta> alfaYBetas;
-    private int transicionAdespertar; // -1 , se permiten todos
+    private final ClusterDeConflicto[] clusters; // un unico cluster en modo GLOBAL
+    private final int[] clusterDe; // cluster al que pertenece cada transicion
+    private final int[][] clustersAfectados; // por transicion: otros clusters que consumen de sus lugares
+    private final boolean particionado; // true si hay mas de un cluster
+    private final ReentrantLock registro = new ReentrantLock(); // serializa el acceso a la red entre clusters
+    private final PlanificadorDeVentanas planificador; // avisa cuando se abre cada ventana alfa
+    private final boolean[] aperturaProgramada; // protegido por el mutex del cluster de cada transicion
+    private final int[] hilosEsperando; // por transicion, protegido por el mutex de su cluster
+    private final long[] conEspera; // bitset de transiciones con hilos esperando
+    private volatile MetricasDeDisparo metricas; // null si no se miden latencias
 
     /**
      * Constructor privado de la clase Monitor.
      * 
      * @throws IllegalArgumentException Si los parámetros son inválidos.
      */
-    private Monitor(RedDePetri redDePetri) {
+    private Monitor(RedDePetri redDePetri, ModoExclusion modo, EstrategiaDeSincronizacion sincronizacion) {
         if (redDePetri == null) {
             throw new IllegalArgumentException("La red de Petri no puede ser nula.");
         }
         this.redDePetri = redDePetri;
         this.alfaYBetas = redDePetri.getAlfayBeta();
-        transicionAdespertar = -1;
 
+        MatrizIncidenciaDispersa matriz = redDePetri.getMatrizDispersa();
+        int cantidadTransiciones = matriz.getCantidadTransiciones();
+        clusterDe = modo == ModoExclusion.POR_CLUSTER ? matriz.calcularClustersDeConflicto()
+                : new int[cantidadTransiciones];
+        int cantidadClusters = 0;
+        for (int c : clusterDe)
+            cantidadClusters = Math.max(cantidadClusters, c + 1);
+        int[] tamanios = new int[cantidadClusters];
+        for (int c : clusterDe)
+            tamanios[c]++;
+        int[][] miembros = new int[cantidadClusters][];
+        for (int c = 0; c < cantidadClusters; c++) {
+            miembros[c] = new int[tamanios[c]];
+            tamanios[c] = 0;
+        }
+        for (int t = 0; t < cantidadTransiciones; t++)
+            miembros[clusterDe[t]][tamanios[clusterDe[t]]++] = t;
+        clusters = new ClusterDeConflicto[cantidadClusters];
+        for (int c = 0; c < cantidadClusters; c++)
+            clusters[c] = new ClusterDeConflicto(miembros[c], sincronizacion.nuevoMutex());
+        particionado = cantidadClusters > 1;
+
+        // Clusters cuyas transiciones consumen de algun lugar que modifica cada
+        // transicion (sin contar el propio)
+        clustersAfectados = new int[cantidadTransiciones][];
+        int[] lugares = matriz.getLugaresDeArcos();
+        int[] transicionesDeArco = matriz.getTransicionesDeArcos();
+        int[] valoresFila = matriz.getValoresPorFila();
+        boolean[] marcado = new boolean[cantidadClusters];
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            List<Integer> afectados = new ArrayList<>();
+            for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+                int p = lugares[i];
+                for (int j = matriz.inicioFila(p); j < matriz.finFila(p); j++) {
+                    int c = clusterDe[transicionesDeArco[j]];
+                    if (valoresFila[j] < 0 && c != clusterDe[t] && !marcado[c]) {
+                        marcado[c] = true;
+                        afectados.add(c);
+                    }
+                }
+            }
+            clustersAfectados[t] = new int[afectados.size()];
+            for (int k = 0; k < afectados.size(); k++) {
+                clustersAfectados[t][k] = afectados.get(k);
+                marcado[afectados.get(k)] = false;
+            }
+        }
+
+        aperturaProgramada = new boolean[cantidadTransiciones];
+        hilosEsperando = new int[cantidadTransiciones];
+        conEspera = new long[(cantidadTransiciones + 63) >>> 6];
+        planificador = new PlanificadorDeVentanas(this::abrirVentana);
     }
 
     /**
@@ -56,32 +154,87 @@ public class Monitor implements MonitorInterface {
     }
 
     /**
-     * Crea o devuelve la instancia única del monitor.
+     * Crea o devuelve la instancia única del monitor, con un único mutex global.
      *
      * @param redDePetri Red de Petri a monitorear.
-     * @param politica   Política para manejo de conflictos.
      * @return Instancia única del monitor.
      */
     public static Monitor getInstance(RedDePetri redDePetri) {
+        return getInstance(redDePetri, ModoExclusion.GLOBAL);
+    }
+
+    /**
+     * Crea o devuelve la instancia única del monitor.
+     *
+     * @param redDePetri Red de Petri a monitorear.
+     * @param modo       Modo de exclusión mutua (global o por cluster de
+     *                   conflicto). Solo se usa al crear la instancia.
+     * @return Instancia única del monitor.
+     */
+    public static Monitor getInstance(RedDePetri redDePetri, ModoExclusion modo) {
+        return getInstance(redDePetri, modo, EstrategiaDeSincronizacion.JUSTA);
+    }
+
+    /**
+     * Crea o devuelve la instancia única del monitor.
+     *
+     * @param redDePetri     Red de Petri a monitorear.
+     * @param modo           Modo de exclusión mutua (global o por cluster de
+     *                       conflicto). Solo se usa al crear la instancia.
+     * @param sincronizacion Estrategia que crea los mutex. Solo se usa al crear
+     *                       la instancia.
+     * @return Instancia única del monitor.
+     */
+    public static Monitor getInstance(RedDePetri redDePetri, ModoExclusion modo,
+            EstrategiaDeSincronizacion sincronizacion) {
         if (m == null) {
-            m = new Monitor(redDePetri);
+            m = new Monitor(redDePetri, modo, sincronizacion);
         }
         return m;
     }
 
     /**
-     * Obtiene o crea la llave asociada a una transición.
+     * Crea un monitor nuevo, independiente de la instancia única. Permite tener
+     * varios monitores en un mismo proceso (por ejemplo, en benchmarks que crean
+     * una red por corrida).
+     *
+     * @param redDePetri     Red de Petri a monitorear.
+     * @param modo           Modo de exclusión mutua.
+     * @param sincronizacion Estrategia que crea los mutex.
+     * @return Un monitor nuevo.
+     */
+    public static Monitor crear(RedDePetri redDePetri, ModoExclusion modo,
+            EstrategiaDeSincronizacion sincronizacion) {
+        return new Monitor(redDePetri, modo, sincronizacion);
+    }
+
+    /**
+     * Habilita los histogramas de latencia por transición y fase de
+     * {@link #fireTransition(int)}. Conviene llamarlo antes de lanzar los hilos
+     * para que las métricas cubran toda la corrida.
+     *
+     * @return las métricas del monitor.
+     */
+    public synchronized MetricasDeDisparo habilitarMetricas() {
+        if (metricas == null) {
+            metricas = new MetricasDeDisparo(clusterDe.length);
+        }
+        return metricas;
+    }
+
+    /** Devuelve las métricas de latencia, o {@code null} si no se habilitaron. */
+    public MetricasDeDisparo getMetricas() {
+        return metricas;
+    }
+
+    /**
+     * Obtiene la llave asociada a una transición.
      *
      * @param transition Identificador de la transición.
      * @return Objeto llave asociada a la transición.
      */
-    private Condition getCondition(int transition) { // automatiza la creacion de llaves (una para cada transicion)
-                                                     // también se
-        // usa para obtener llave específica
-        if (!condiciones.containsKey(transition)) {
-            condiciones.put(transition, mutex.newCondition());
-        }
-        return condiciones.get(transition);
+    private Condition getCondition(int transition) {
+        return clusters[clusterDe[transition]].condiciones.get(transition);
     }
 
     // MÉTODO PRINCIPAL: fireTransition
@@ -90,8 +243,17 @@ public class Monitor implements MonitorInterface {
         if (redDePetri.isTermino()) {
             return false;
         }
-        // Se toma el mutex
-        mutex.lock();
+        ClusterDeConflicto cluster = clusters[clusterDe[t]];
+        boolean disparada = false;
+        Disparo evento = new Disparo();
+        evento.begin();
+        int esperas = 0;
+        MetricasDeDisparo metricas = this.metricas;
+        long pedido = metricas != null ? System.nanoTime() : 0;
+        // Se toma el mutex del cluster de la transicion
+        cluster.mutex.lock();
+        long tomado = metricas != null ? System.nanoTime() : 0;
+        long esperado = 0; // tiempo dormido (con el mutex liberado)
         try {
 
             // Si es la transicion que llamo la politica (!true = false), y no esta
@@ -102,121 +264,333 @@ public class Monitor implements MonitorInterface {
             // sencibilizada (!true = false), se duerme
             // Si es la transicion que llamo la politica (!true = false), y esta
             // sencibilizada (!true = false), dispara y analiza la politica para ver quien sigue
-            while (!estaSensibilizada(t) || !politicaAdmite(t)) {
+            int estado;
+            while ((estado = estadoDeSensibilizado(t)) != SENSIBILIZADA || !politicaAdmite(cluster, t)) {
                 if (redDePetri.isTermino()) {
-                    notificarATodos();
-                    return false;
+                    break;
                 }
 
-                getCondition(t).await();
-               
+                if (esperas > 0) {
+                    registrarDespertarEspurio(t);
+                    if (metricas != null)
+                        metricas.registrarReEspera(t);
+                }
+                esperado += esperar(t, estado == EN_ALFA, metricas);
+                esperas++;
             }
-            redDePetri.dispararTransicion(t);
+            if (!redDePetri.isTermino()) {
+                disparar(t);
 
+                actualizarAlfaYBeta(cluster, t);
 
-            actualizarAlfaYBeta(t);
-
-            // Actualizar quién puede seguir
-            despertarHilos();
+                // Actualizar quién puede seguir
+                despertarHilos(cluster);
+                disparada = true;
+                if (metricas != null && esperas > 0)
+                    metricas.registrarDisparoTrasDespertar(t);
+            }
 
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         } finally {
-            mutex.unlock();
+            if (metricas != null) {
+                metricas.registrar(t, MetricasDeDisparo.Fase.ADQUISICION, tomado - pedido);
+                metricas.registrar(t, MetricasDeDisparo.Fase.LOCK_TOMADO, System.nanoTime() - tomado - esperado);
+            }
+            cluster.mutex.unlock();
+        }
+        if (disparada) {
+            evento.end();
+            if (evento.shouldCommit()) {
+                evento.transicion = t;
+                evento.esperas = esperas;
+                evento.commit();
+            }
+            propagarDisparo(t);
+        }
+        if (redDePetri.isTermino()) {
+            notificarATodos();
+        }
+        return disparada;
+    }
+
+    private void disparar(int t) {
+        bloquearRegistro();
+        try {
+            redDePetri.dispararTransicion(t);
+        } finally {
+            desbloquearRegistro();
         }
-        return true;
     }
 
-    private boolean estaSensibilizada(int transicion) throws InterruptedException {
+    /**
+     * Avisa a los clusters que consumen de los lugares modificados por la
+     * transición disparada, tomando sus mutex de a uno (nunca anidados).
+     */
+    private void propagarDisparo(int t) {
+        for (int c : clustersAfectados[t]) {
+            ClusterDeConflicto afectado = clusters[c];
+            afectado.mutex.lock();
+            try {
+                actualizarAlfaYBeta(afectado, -1);
+                despertarHilos(afectado);
+            } finally {
+                afectado.mutex.unlock();
+            }
+        }
+    }
+
+    private boolean sensibilizadoPorToken(int transicion) {
+        bloquearRegistro();
+        try {
+            return redDePetri.sensibilizado(transicion);
+        } finally {
+            desbloquearRegistro();
+        }
+    }
+
+    /**
+     * Indica si la transición está sensibilizada ({@code SENSIBILIZADA}), si le
+     * faltan tokens ({@code SIN_TOKENS}) o si los tiene pero su ventana alfa no
+     * se abrió ({@code EN_ALFA}).
+     */
+    private int estadoDeSensibilizado(int transicion) {
         // Se corrobora que este sensibilizada primero por token
-        if (!redDePetri.sensibilizado(transicion)) {
+        if (!sensibilizadoPorToken(transicion)) {
             // Si no esta sensibilizado por token, no se sigue ejecutando
-            return false;
+            return SIN_TOKENS;
         }
         //comprueba sensibilizacion por ventana de tiempo
-        switch (alfaYBetas.get(transicion).verificarVentana()) {
-            case ALFA -> {
-                long inicio = alfaYBetas.get(transicion).getInicio();
-                long transcurrido = System.currentTimeMillis() - inicio;
-                long faltante = alfaYBetas.get(transicion).getAlfa() - transcurrido;
-
-                if (faltante > 0) {
-                    getCondition(transicion).await(faltante, TimeUnit.MILLISECONDS);
-                }
-                return redDePetri.sensibilizado(transicion)
-                && alfaYBetas.get(transicion).verificarVentana() != AlfaYBeta.Estado.ALFA; 
-            }
-            default -> {
-                return true; // Si está en estado BETA o OK, los tiempos se cumplen
+        if (alfaYBetas.get(transicion).verificarVentana() == AlfaYBeta.Estado.ALFA) {
+            // El hilo espera en su condicion hasta que el planificador avise
+            programarApertura(transicion);
+            return EN_ALFA;
+        }
+        return SENSIBILIZADA; // Si está en estado BETA o OK, los tiempos se cumplen
+    }
+
+    /**
+     * Programa el aviso de apertura de la ventana de la transición, si no hay uno
+     * pendiente. Debe llamarse con el mutex del cluster de la transición tomado.
+     */
+    private void programarApertura(int transicion) {
+        if (!aperturaProgramada[transicion]) {
+            aperturaProgramada[transicion] = true;
+            planificador.programar(transicion, alfaYBetas.get(transicion).getAperturaNanos());
+        }
+    }
+
+    /**
+     * Llamado por el planificador cuando se cumple el instante programado. Si la
+     * ventana se reinició y volvió a iniciar en el medio, se reprograma; si no,
+     * se despierta a un hilo de la transición.
+     */
+    private void abrirVentana(int transicion) {
+        ClusterDeConflicto cluster = clusters[clusterDe[transicion]];
+        cluster.mutex.lock();
+        try {
+            aperturaProgramada[transicion] = false;
+            if (alfaYBetas.get(transicion).verificarVentana() == AlfaYBeta.Estado.ALFA) {
+                programarApertura(transicion);
+            } else {
+                notificar(transicion);
             }
+        } finally {
+            cluster.mutex.unlock();
         }
     }
 
-    private void actualizarAlfaYBeta(int transicionDisparada) {
-        alfaYBetas.get(transicionDisparada).setInicio(0);
-        for (int t = 0; redDePetri.getMatrizIncidencia()[0].length > t; t++) {
-            if (redDePetri.sensibilizado(t) && alfaYBetas.get(t).getInicio() <= 0)
-                alfaYBetas.get(t).iniciar();
+    /**
+     * Reinicia la ventana de la transición disparada (si pertenece al cluster) e
+     * inicia la de las transiciones sensibilizadas del cluster que no la tenían
+     * iniciada.
+     */
+    private void actualizarAlfaYBeta(ClusterDeConflicto cluster, int transicionDisparada) {
+        if (transicionDisparada >= 0)
+            alfaYBetas.get(transicionDisparada).reiniciar();
+        int indice = clusterDe[cluster.transiciones[0]];
+        bloquearRegistro();
+        try {
+            // Se recorren solo los bits encendidos del conjunto de sensibilizadas
+            long[] sensibilizadas = redDePetri.getPalabrasSensibilizadas();
+            for (int w = 0; w < sensibilizadas.length; w++) {
+                long palabra = sensibilizadas[w];
+                while (palabra != 0) {
+                    int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                    palabra &= palabra - 1;
+                    if (clusterDe[t] == indice && !alfaYBetas.get(t).estaIniciada())
+                        alfaYBetas.get(t).iniciar();
+                }
+            }
+        } finally {
+            desbloquearRegistro();
         }
     }
 
-    private boolean politicaAdmite(int t) {
-        return transicionAdespertar == -1 || transicionAdespertar == t;
+    private boolean politicaAdmite(ClusterDeConflicto cluster, int t) {
+        return cluster.transicionAdespertar == -1 || cluster.transicionAdespertar == t;
     }
 
+    /**
+     * Despierta a todos los hilos de todos los clusters. Toma el mutex de cada
+     * cluster de a uno, por lo que debe llamarse sin tener ninguno tomado.
+     */
     private void notificarATodos() {
-        for (Condition c : condiciones.values()) {
-            c.signalAll();
+        planificador.detener();
+        for (ClusterDeConflicto cluster : clusters) {
+            cluster.mutex.lock();
+            try {
+                MetricasDeDisparo metricas = this.metricas;
+                for (Map.Entry<Integer, Condition> c : cluster.condiciones.entrySet()) {
+                    if (metricas != null)
+                        metricas.registrarSenales(c.getKey(), hilosEsperando[c.getKey()]);
+                    c.getValue().signalAll();
+                }
+            } finally {
+                cluster.mutex.unlock();
+            }
         }
     }
 
-    // despertar hilos según política
-    private void despertarHilos() {
-        // "and" entre cola de condicion y sensibilizadas
-        List<Integer> candidatos = new ArrayList<>();
-        int[] Vs = redDePetri.getSensibilizadas();
-        int[] Vc = getHilosEnColas();
+    // despertar hilos del cluster según política
+    private void despertarHilos(ClusterDeConflicto cluster) {
+        // "and" entre transiciones con hilos esperando, sensibilizadas y el cluster
+        long[] candidatos = cluster.candidatos;
+        boolean hayCandidatos = false;
 
-        for (int t = 0; t < redDePetri.getCantidadDeTransiciones(); t++) {
-            if (Vs[t] > 0 && Vc[t] > 0)
-                candidatos.add(t);
+        bloquearRegistro();
+        try {
+            long[] sensibilizadas = redDePetri.getPalabrasSensibilizadas();
+            for (int k = 0; k < cluster.palabras.length; k++) {
+                int w = cluster.palabras[k];
+                // Los bits del cluster solo cambian bajo su mutex, que ya se tiene
+                long espera = particionado ? (long) PALABRA.getOpaque(conEspera, w) : conEspera[w];
+                candidatos[w] = espera & sensibilizadas[w] & cluster.mascaras[k];
+                hayCandidatos |= candidatos[w] != 0;
+            }
+        } finally {
+            desbloquearRegistro();
         }
 
-        if (candidatos.isEmpty()) {
-            transicionAdespertar = -1;
+        if (!hayCandidatos) {
+            cluster.transicionAdespertar = -1;
             return;
         }
 
         // Le pido a la red de petri que consulte por su politica
-        transicionAdespertar = redDePetri.consultarPolitica(candidatos);
-        if (transicionAdespertar >= 0) {
-            notificar(transicionAdespertar);
+        DecisionPolitica evento = new DecisionPolitica();
+        evento.begin();
+        cluster.transicionAdespertar = redDePetri.consultarPolitica(candidatos);
+        evento.end();
+        if (cluster.transicionAdespertar >= 0 && evento.shouldCommit()) {
+            evento.candidatos = describir(cluster, candidatos);
+            evento.elegida = cluster.transicionAdespertar;
+            evento.commit();
+        }
+        if (cluster.transicionAdespertar >= 0) {
+            notificar(cluster.transicionAdespertar);
             return;
         }
-        // Se notifica a uno por cada lugar que tiene a un subrpoceso y su condicion se
-        // cumple
-        for (int t : candidatos) {
-            notificar(t);
+        // Se notifica a uno por cada transicion que tiene hilos esperando y su
+        // condicion se cumple
+        for (int k = 0; k < cluster.palabras.length; k++) {
+            int w = cluster.palabras[k];
+            long palabra = candidatos[w];
+            while (palabra != 0) {
+                notificar((w << 6) + Long.numberOfTrailingZeros(palabra));
+                palabra &= palabra - 1;
+            }
         }
     }
 
     private void notificar(int t) {
-        condiciones.get(t).signal();
+        getCondition(t).signal();
+        MetricasDeDisparo metricas = this.metricas;
+        if (metricas != null)
+            metricas.registrarSenales(t, 1);
+        Senal evento = new Senal();
+        if (evento.shouldCommit()) {
+            evento.transicion = t;
+            evento.hilosEsperando = hilosEsperando[t];
+            evento.commit();
+        }
     }
 
-    private int[] getHilosEnColas() {
-        int cantidadTransiciones = redDePetri.getCantidadDeTransiciones(); // Cantidad de transiciones
-        // Vector que nos dice que transiciones tienen hilos esperando
-        int[] vectorEsperando = new int[cantidadTransiciones];
-        for (int t = 0; t < cantidadTransiciones; t++) {
-            Condition c = condiciones.get(t); // Obtenemos la variable de conidicion
-            if (c != null) {
-                // nos dice cuantos hilos estan esperando en una condicion
-                vectorEsperando[t] = mutex.getWaitQueueLength(c);
-            } else {
-                vectorEsperando[t] = 0;
+    private static void registrarDespertarEspurio(int t) {
+        DespertarEspurio evento = new DespertarEspurio();
+        if (evento.shouldCommit()) {
+            evento.transicion = t;
+            evento.commit();
+        }
+    }
+
+    // Lista de transiciones del bitset de candidatos, por ejemplo "T2 T3"
+    private static String describir(ClusterDeConflicto cluster, long[] candidatos) {
+        StringBuilder sb = new StringBuilder();
+        for (int w : cluster.palabras) {
+            long palabra = candidatos[w];
+            while (palabra != 0) {
+                if (sb.length() > 0)
+                    sb.append(' ');
+                sb.append('T').append((w << 6) + Long.numberOfTrailingZeros(palabra));
+                palabra &= palabra - 1;
             }
         }
-        return vectorEsperando;
+        return sb.toString();
+    }
+
+    /**
+     * Espera en la condición de la transición, llevando la cuenta de hilos en
+     * espera. Debe llamarse con el mutex del cluster de la transición tomado.
+     *
+     * @return el tiempo dormido en nanosegundos, si se miden latencias (si no, 0).
+     */
+    private long esperar(int t, boolean porAlfa, MetricasDeDisparo metricas) throws InterruptedException {
+        if (hilosEsperando[t]++ == 0)
+            marcarEspera(t, true);
+        long inicio = metricas != null ? System.nanoTime() : 0;
+        Espera evento = new Espera();
+        evento.begin();
+        try {
+            getCondition(t).await();
+        } finally {
+            if (--hilosEsperando[t] == 0)
+                marcarEspera(t, false);
+        }
+        evento.end();
+        if (evento.shouldCommit()) {
+            evento.transicion = t;
+            evento.porAlfa = porAlfa;
+            evento.commit();
+        }
+        if (metricas == null)
+            return 0;
+        long espera = System.nanoTime() - inicio;
+        metricas.registrar(t, porAlfa ? MetricasDeDisparo.Fase.ESPERA_ALFA : MetricasDeDisparo.Fase.ESPERA_CONDICION,
+                espera);
+        return espera;
+    }
+
+    // Con varios clusters, otros mutex pueden estar escribiendo la misma palabra
+    private void marcarEspera(int t, boolean hay) {
+        long bit = 1L << t;
+        if (!particionado) {
+            conEspera[t >>> 6] = hay ? conEspera[t >>> 6] | bit : conEspera[t >>> 6] & ~bit;
+        } else if (hay) {
+            PALABRA.getAndBitwiseOr(conEspera, t >>> 6, bit);
+        } else {
+            PALABRA.getAndBitwiseAnd(conEspera, t >>> 6, ~bit);
+        }
+    }
+
+    // En modo global el mutex del unico cluster ya protege a la red
+    private void bloquearRegistro() {
+        if (particionado)
+            registro.lock();
+    }
+
+    private void desbloquearRegistro() {
+        if (particionado)
+            registro.unlock();
     }
 }
@@ -0,0 +1,497 @@
+package monitor;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import petri.AlfaYBeta;
+import petri.MatrizDeConflictos;
+import petri.MatrizIncidenciaDispersa;
+import petri.RedDePetri;
+
+/**
+ * Implementación alternativa de {@link MonitorInterface} que decide los
+ * disparos sin exclusión mutua global. El marcado se guarda empaquetado en un
+ * {@link AtomicLongArray} (dos lugares de 32 bits por palabra) y una transición
+ * toma sus tokens de entrada con compare-and-set, palabra por palabra y en
+ * orden creciente; si alguna entrada no alcanza, devuelve lo ya tomado. Un hilo
+ * solo se estaciona ({@link LockSupport#park}) cuando su transición no puede
+ * dispararse.
+ *
+ * Se respeta la misma semántica que {@link Monitor}: la política de la red
+ * elige entre los candidatos en conflicto y, hasta que la elegida se dispare,
+ * no se admite ninguna transición en conflicto con ella (como en cada cluster
+ * de {@link ModoExclusion#POR_CLUSTER}), y cada transición espera su ventana
+ * alfa desde que queda sensibilizada. Como la decisión publicada puede ser de
+ * un estado anterior, cada elección la usa un solo disparo, y sin elección una
+ * transición solo se admite si ninguna en conflicto con ella está
+ * sensibilizada y con hilos esperando; si alguna lo está, se anota como
+ * esperando y consulta la política con las dos como candidatas antes de
+ * disparar.
+ *
+ * La red de Petri se usa como réplica para el diario, los clientes salientes y
+ * la detección de fin, y se actualiza en diferido. Después de tomar sus
+ * entradas, cada disparo saca un turno de un contador atómico y deja la
+ * transición en un anillo de pendientes antes de publicar sus salidas; como un
+ * disparo solo puede consumir tokens publicados por turnos anteriores, el orden
+ * de los turnos es una secuencia de disparo válida. Los pendientes se aplican a
+ * la réplica en orden de turno por el hilo que consiga el lock {@code registro}
+ * con {@code tryLock}: quien no lo consigue sigue de largo y su disparo lo
+ * aplica el que lo tiene. Ningún hilo espera el lock para disparar; el único
+ * punto de serialización es el contador de turnos. La réplica va por detrás del
+ * marcado atómico, pero siempre es un prefijo de esa secuencia, así que cuando
+ * queda sin transiciones sensibilizadas la red realmente terminó. Los
+ * observadores de la red corren en el hilo que aplica el disparo, que puede no
+ * ser el que lo hizo. Si el anillo se llena porque un hilo se demoró entre
+ * sacar su turno y anotarlo, los demás esperan a que se libere un lugar.
+ */
+public class MonitorSinBloqueo implements MonitorInterface {
+
+    private static final long SIN_INICIO = Long.MIN_VALUE; // ventana no iniciada
+    private static final long MASCARA_CAMPO = 0xFFFFFFFFL;
+    private static final long MASCARA_ELEGIDA = (1L << 24) - 1;
+    private static final VarHandle PALABRA = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final RedDePetri redDePetri;
+    private final MatrizIncidenciaDispersa matriz;
+    private final int cantidadTransiciones;
+
+    private final AtomicLongArray marcado; // dos lugares por palabra
+    private final int[][] palabrasEntrada; // por transicion: palabras con lugares de entrada
+    private final long[][] requeridoEntrada; // por transicion y palabra: tokens a tomar, empaquetados
+    private final int[][] palabrasSalida; // por transicion: palabras con lugares de salida
+    private final long[][] sumaSalida; // por transicion y palabra: tokens a agregar, empaquetados
+
+    private final long[] alfaNanos; // alfa de cada transicion, en nanosegundos
+    private final AtomicLongArray inicioVentana; // instante en que se sensibilizo cada transicion
+
+    // Decision de la politica: en los 24 bits bajos la transicion elegida + 1 (0 = se
+    // permiten todas) y en los altos la cantidad de disparos publicados cuando se
+    // calculo, para que una decision vieja nunca pise a una mas nueva
+    private final AtomicLong transicionAdespertar = new AtomicLong(0);
+    private final AtomicLong disparosPublicados = new AtomicLong(0);
+    private final MatrizDeConflictos conflictos;
+    private final int[][] enConflicto; // por transicion: las que comparten algun lugar de entrada
+    private final AtomicIntegerArray esperando; // hilos estacionados por transicion
+    private final long[] conEspera; // bitset de transiciones con hilos esperando; puede sobrar algun bit
+    private final ThreadLocal<long[]> candidatos; // bitset de candidatos de cada hilo que despierta
+    private final ArrayList<ConcurrentLinkedQueue<Thread>> colas = new ArrayList<>();
+    private static final int PENDIENTES = 1 << 16; // capacidad del anillo, potencia de 2
+
+    private final AtomicLong turnos = new AtomicLong(0); // orden de los disparos
+    private final AtomicIntegerArray pendientes = new AtomicIntegerArray(PENDIENTES); // transicion + 1 por turno, 0 = libre
+    private final ReentrantLock registro = new ReentrantLock(); // protege la replica en la red de Petri
+    private long aplicados; // turnos ya aplicados a la replica; solo con el lock registro
+
+    public MonitorSinBloqueo(RedDePetri redDePetri) {
+        if (redDePetri == null) {
+            throw new IllegalArgumentException("La red de Petri no puede ser nula.");
+        }
+        this.redDePetri = redDePetri;
+        this.matriz = redDePetri.getMatrizDispersa();
+        this.cantidadTransiciones = matriz.getCantidadTransiciones();
+
+        int[] inicial = redDePetri.getMarcado();
+        marcado = new AtomicLongArray((inicial.length + 1) >>> 1);
+        for (int p = 0; p < inicial.length; p++) {
+            marcado.getAndAdd(p >>> 1, empaquetar(p, inicial[p]));
+        }
+
+        palabrasEntrada = new int[cantidadTransiciones][];
+        requeridoEntrada = new long[cantidadTransiciones][];
+        palabrasSalida = new int[cantidadTransiciones][];
+        sumaSalida = new long[cantidadTransiciones][];
+        int[] lugares = matriz.getLugaresDeArcos();
+        int[] valores = matriz.getValoresPorColumna();
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            agruparPorPalabra(t, lugares, valores, true);
+            agruparPorPalabra(t, lugares, valores, false);
+        }
+
+        ArrayList<AlfaYBeta> alfaYBetas = redDePetri.getAlfayBeta();
+        alfaNanos = new long[cantidadTransiciones];
+        inicioVentana = new AtomicLongArray(cantidadTransiciones);
+        esperando = new AtomicIntegerArray(cantidadTransiciones);
+        conEspera = new long[(cantidadTransiciones + 63) >>> 6];
+        candidatos = ThreadLocal.withInitial(() -> new long[conEspera.length]);
+        enConflicto = new int[cantidadTransiciones][];
+        conflictos = redDePetri.getConflictos();
+        long[] fila = new long[conEspera.length];
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            alfaNanos[t] = alfaYBetas.get(t).getAlfa() * 1_000_000L;
+            inicioVentana.set(t, SIN_INICIO);
+            colas.add(new ConcurrentLinkedQueue<>());
+            Arrays.fill(fila, 0);
+            conflictos.agregarConflictos(t, fila);
+            enConflicto[t] = transicionesDe(fila);
+        }
+        long ahora = System.nanoTime();
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            iniciarSiSensibilizada(t, ahora);
+        }
+    }
+
+    @Override
+    public boolean fireTransition(int t) {
+        boolean encolado = false;
+        try {
+            while (true) {
+                if (redDePetri.isTermino()) {
+                    despertarATodos();
+                    return false;
+                }
+                long faltante = faltanteVentana(t);
+                if (faltante <= 0 && politicaAdmite(t)) {
+                    if (tomarEntradas(t)) {
+                        if (encolado) {
+                            salirDeCola(t);
+                            encolado = false;
+                        }
+                        registrarYPublicar(t);
+                        return true;
+                    }
+                    // La eleccion pudo haberse usado en este intento: se vuelve a decidir
+                    despertarHilos();
+                }
+                if (!encolado) {
+                    // Se anota como esperando antes de volver a mirar el estado, asi un
+                    // disparo concurrente lo ve y lo despierta
+                    colas.get(t).add(Thread.currentThread());
+                    if (esperando.incrementAndGet(t) == 1)
+                        PALABRA.getAndBitwiseOr(conEspera, t >>> 6, 1L << t);
+                    encolado = true;
+                    continue;
+                }
+                long decision = transicionAdespertar.get();
+                if (elegidaEn(decision) == t && !sensibilizado(t)) {
+                    // La politica eligio esta transicion pero otro hilo le gano los tokens:
+                    // se recalcula la eleccion para no dejar a la red sin candidatos
+                    transicionAdespertar.compareAndSet(decision, decision & ~MASCARA_ELEGIDA);
+                    despertarHilos();
+                    continue;
+                }
+                if (elegidaEn(decision) == -1 && faltante <= 0 && sensibilizado(t)) {
+                    // Sin eleccion pero con una transicion en conflicto esperando: se
+                    // consulta la politica, que ahora ve a esta entre los candidatos
+                    despertarHilos();
+                    continue;
+                }
+                if (faltante > 0 && sensibilizado(t)) {
+                    LockSupport.parkNanos(this, faltante);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+        } finally {
+            if (encolado) {
+                salirDeCola(t);
+            }
+        }
+    }
+
+    private void registrarYPublicar(int t) {
+        // El turno se saca antes de publicar las salidas: quien consuma esos tokens
+        // saca un turno posterior
+        int casilla = (int) (turnos.getAndIncrement() & (PENDIENTES - 1));
+        while (pendientes.get(casilla) != 0) {
+            // Anillo lleno: se ayuda a vaciarlo
+            aplicarPendientes();
+            Thread.onSpinWait();
+        }
+        pendientes.set(casilla, t + 1);
+        int[] palabras = palabrasSalida[t];
+        long[] sumas = sumaSalida[t];
+        for (int i = 0; i < palabras.length; i++) {
+            marcado.getAndAdd(palabras[i], sumas[i]);
+        }
+        disparosPublicados.incrementAndGet();
+        aplicarPendientes();
+        actualizarVentanas(t);
+        if (redDePetri.isTermino()) {
+            despertarATodos();
+        } else {
+            despertarHilos();
+        }
+    }
+
+    /**
+     * Aplica a la réplica los disparos pendientes, en orden de turno, hasta el
+     * primer turno que todavía no se anotó. No espera el lock: si lo tiene otro
+     * hilo, ese aplica lo pendiente y vuelve a mirar el anillo al soltarlo.
+     */
+    private void aplicarPendientes() {
+        while (registro.tryLock()) {
+            int siguiente;
+            try {
+                int anotada;
+                while ((anotada = pendientes.get(siguiente = (int) (aplicados & (PENDIENTES - 1)))) != 0) {
+                    redDePetri.dispararTransicion(anotada - 1);
+                    pendientes.set(siguiente, 0);
+                    aplicados++;
+                }
+            } finally {
+                registro.unlock();
+            }
+            // Un disparo anotado mientras se tenia el lock lo aplica este hilo
+            if (pendientes.get(siguiente) == 0)
+                return;
+        }
+    }
+
+    /**
+     * Toma los tokens de entrada de la transición con compare-and-set. Si alguna
+     * palabra no tiene tokens suficientes devuelve los ya tomados y, si había
+     * tomado alguno, vuelve a despertar según la política.
+     */
+    private boolean tomarEntradas(int t) {
+        int[] palabras = palabrasEntrada[t];
+        long[] requerido = requeridoEntrada[t];
+        for (int i = 0; i < palabras.length; i++) {
+            while (true) {
+                long actual = marcado.get(palabras[i]);
+                if (!alcanza(actual, requerido[i])) {
+                    for (int j = 0; j < i; j++) {
+                        marcado.getAndAdd(palabras[j], requerido[j]);
+                    }
+                    if (i > 0) {
+                        // Mientras los tokens estaban tomados otro hilo pudo ver su
+                        // transicion sin sensibilizar y estacionarse sin plazo
+                        despertarHilos();
+                    }
+                    return false;
+                }
+                if (marcado.compareAndSet(palabras[i], actual, actual - requerido[i])) {
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private boolean sensibilizado(int t) {
+        int[] palabras = palabrasEntrada[t];
+        long[] requerido = requeridoEntrada[t];
+        for (int i = 0; i < palabras.length; i++) {
+            if (!alcanza(marcado.get(palabras[i]), requerido[i]))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean alcanza(long actual, long requerido) {
+        return (actual & MASCARA_CAMPO) >= (requerido & MASCARA_CAMPO)
+                && (actual >>> 32) >= (requerido >>> 32);
+    }
+
+    /**
+     * Nanosegundos que faltan para que se abra la ventana alfa (0 si ya abrió).
+     * Una ventana sin iniciar no está abierta: si la transición está
+     * sensibilizada se inicia ahora y, si no, falta el alfa completo.
+     */
+    private long faltanteVentana(int t) {
+        if (alfaNanos[t] == 0)
+            return 0;
+        long inicio = inicioVentana.get(t);
+        if (inicio == SIN_INICIO) {
+            iniciarSiSensibilizada(t, System.nanoTime());
+            inicio = inicioVentana.get(t);
+            if (inicio == SIN_INICIO)
+                return alfaNanos[t];
+        }
+        return alfaNanos[t] - (System.nanoTime() - inicio);
+    }
+
+    /**
+     * Reinicia la ventana de la transición disparada y abre la de las
+     * transiciones que quedaron sensibilizadas por los lugares que modificó.
+     */
+    private void actualizarVentanas(int disparada) {
+        inicioVentana.set(disparada, SIN_INICIO);
+        long ahora = System.nanoTime();
+        iniciarSiSensibilizada(disparada, ahora);
+        int[] lugares = matriz.getLugaresDeArcos();
+        int[] transiciones = matriz.getTransicionesDeArcos();
+        int[] valoresFila = matriz.getValoresPorFila();
+        for (int i = matriz.inicioColumna(disparada); i < matriz.finColumna(disparada); i++) {
+            int p = lugares[i];
+            for (int j = matriz.inicioFila(p); j < matriz.finFila(p); j++) {
+                if (valoresFila[j] < 0)
+                    iniciarSiSensibilizada(transiciones[j], ahora);
+            }
+        }
+    }
+
+    private void iniciarSiSensibilizada(int t, long ahora) {
+        if (sensibilizado(t))
+            inicioVentana.compareAndSet(t, SIN_INICIO, ahora);
+    }
+
+    /**
+     * Indica si la política deja disparar la transición. Si la eligió, consume la
+     * elección para que no la use otro disparo. Si eligió otra en conflicto con
+     * esta, no la admite. Si no, la admite solo si no hay una transición en
+     * conflicto sensibilizada y con hilos esperando, que la política tendría que
+     * comparar con esta.
+     */
+    private boolean politicaAdmite(int t) {
+        while (true) {
+            long decision = transicionAdespertar.get();
+            int elegida = elegidaEn(decision);
+            if (elegida == t) {
+                if (transicionAdespertar.compareAndSet(decision, decision & ~MASCARA_ELEGIDA))
+                    return true;
+                continue;
+            }
+            return (elegida == -1 || !conflictos.enConflicto(t, elegida)) && !hayConflictoEsperando(t);
+        }
+    }
+
+    private boolean hayConflictoEsperando(int t) {
+        for (int u : enConflicto[t]) {
+            if ((((long) PALABRA.getVolatile(conEspera, u >>> 6) >>> u) & 1) != 0 && esperando.get(u) > 0
+                    && sensibilizado(u))
+                return true;
+        }
+        return false;
+    }
+
+    // despertar hilos según política
+    private void despertarHilos() {
+        long vista = disparosPublicados.get();
+        // "and" entre transiciones con hilos esperando y sensibilizadas; solo se
+        // mira el marcado de las que tienen el bit de espera
+        long[] candidatos = this.candidatos.get();
+        boolean hayCandidatos = false;
+        for (int w = 0; w < candidatos.length; w++) {
+            long espera = (long) PALABRA.getVolatile(conEspera, w);
+            long palabra = espera;
+            while (palabra != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                long bit = palabra & -palabra;
+                palabra &= palabra - 1;
+                if (esperando.get(t) == 0 || !sensibilizado(t))
+                    espera &= ~bit;
+            }
+            candidatos[w] = espera;
+            hayCandidatos |= espera != 0;
+        }
+        if (!hayCandidatos) {
+            decidir(vista, -1);
+            return;
+        }
+        int elegida = redDePetri.consultarPolitica(candidatos);
+        if (!decidir(vista, elegida)) {
+            return; // ya hay una decision calculada sobre un estado posterior
+        }
+        if (elegida >= 0) {
+            notificar(elegida);
+            return;
+        }
+        for (int w = 0; w < candidatos.length; w++) {
+            long palabra = candidatos[w];
+            while (palabra != 0) {
+                notificar((w << 6) + Long.numberOfTrailingZeros(palabra));
+                palabra &= palabra - 1;
+            }
+        }
+    }
+
+    /**
+     * Publica la decisión de la política si no hay otra calculada sobre un estado
+     * posterior.
+     */
+    private boolean decidir(long vista, int elegida) {
+        long nueva = (vista << 24) | (elegida + 1);
+        while (true) {
+            long actual = transicionAdespertar.get();
+            if ((actual >>> 24) > vista)
+                return false;
+            if (transicionAdespertar.compareAndSet(actual, nueva))
+                return true;
+        }
+    }
+
+    private static int elegidaEn(long decision) {
+        return (int) (decision & MASCARA_ELEGIDA) - 1;
+    }
+
+    private void notificar(int t) {
+        Thread hilo = colas.get(t).peek();
+        if (hilo != null)
+            LockSupport.unpark(hilo);
+    }
+
+    private void despertarATodos() {
+        for (ConcurrentLinkedQueue<Thread> cola : colas) {
+            for (Thread hilo : cola)
+                LockSupport.unpark(hilo);
+        }
+    }
+
+    private void salirDeCola(int t) {
+        colas.get(t).remove(Thread.currentThread());
+        if (esperando.decrementAndGet(t) == 0) {
+            PALABRA.getAndBitwiseAnd(conEspera, t >>> 6, ~(1L << t));
+            // Otro hilo pudo anotarse y prender el bit antes de que se apagara
+            if (esperando.get(t) > 0)
+                PALABRA.getAndBitwiseOr(conEspera, t >>> 6, 1L << t);
+        }
+    }
+
+    private void agruparPorPalabra(int t, int[] lugares, int[] valores, boolean entradas) {
+        int cantidad = 0;
+        int ultimaPalabra = -1;
+        // Los lugares de cada columna estan ordenados, asi que los de una misma
+        // palabra quedan contiguos
+        for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+            if ((valores[i] < 0) == entradas && (lugares[i] >>> 1) != ultimaPalabra) {
+                ultimaPalabra = lugares[i] >>> 1;
+                cantidad++;
+            }
+        }
+        int[] palabras = new int[cantidad];
+        long[] paquetes = new long[cantidad];
+        int k = -1;
+        ultimaPalabra = -1;
+        for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+            if ((valores[i] < 0) != entradas)
+                continue;
+            if ((lugares[i] >>> 1) != ultimaPalabra) {
+                ultimaPalabra = lugares[i] >>> 1;
+                palabras[++k] = ultimaPalabra;
+            }
+            paquetes[k] += empaquetar(lugares[i], Math.abs(valores[i]));
+        }
+        if (entradas) {
+            palabrasEntrada[t] = palabras;
+            requeridoEntrada[t] = paquetes;
+        } else {
+            palabrasSalida[t] = palabras;
+            sumaSalida[t] = paquetes;
+        }
+    }
+
+    private static int[] transicionesDe(long[] bitset) {
+        int cantidad = 0;
+        for (long palabra : bitset)
+            cantidad += Long.bitCount(palabra);
+        int[] transiciones = new int[cantidad];
+        int k = 0;
+        for (int w = 0; w < bitset.length; w++) {
+            for (long palabra = bitset[w]; palabra != 0; palabra &= palabra - 1)
+                transiciones[k++] = (w << 6) + Long.numberOfTrailingZeros(palabra);
+        }
+        return transiciones;
+    }
+
+    private static long empaquetar(int lugar, int tokens) {
+        return ((long) tokens & MASCARA_CAMPO) << ((lugar & 1) << 5);
+    }
+}
@@ -0,0 +1,76 @@
+package monitor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mutex no justo que, antes de bloquear al hilo, intenta tomar el lock girando
+ * con {@link Thread#onSpinWait()}. La cantidad de giros se adapta: crece cuando
+ * girar alcanzó para tomar el lock y se achica cuando no, de modo que bajo
+ * contención larga el mutex se comporta como un {@link ReentrantLock} común.
+ *
+ * Las variables de condición son las del lock subyacente, así que el giro solo
+ * se aplica a {@code lock}, {@code lockInterruptibly} y {@code tryLock} con
+ * espera. Un hilo despertado de una condición (por ejemplo, al abrirse su
+ * ventana alfa) vuelve a tomar el mutex dentro de {@code await}, con la cola
+ * del {@link ReentrantLock} y sin girar.
+ */
+class MutexGiraYEspera implements Lock {
+
+    private static final int GIROS_MINIMOS = 16;
+    private static final int GIROS_MAXIMOS = 1 << 12;
+
+    private final ReentrantLock lock = new ReentrantLock(false);
+    private volatile int giros = GIROS_MINIMOS * 4; // presupuesto actual (aproximado, sin sincronizar)
+
+    @Override
+    public void lock() {
+        if (girar())
+            return;
+        lock.lock();
+    }
+
+    @Override
+    public void lockInterruptibly() throws InterruptedException {
+        if (girar())
+            return;
+        lock.lockInterruptibly();
+    }
+
+    @Override
+    public boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    @Override
+    public boolean tryLock(long tiempo, TimeUnit unidad) throws InterruptedException {
+        return girar() || lock.tryLock(tiempo, unidad);
+    }
+
+    @Override
+    public void unlock() {
+        lock.unlock();
+    }
+
+    @Override
+    public Condition newCondition() {
+        return lock.newCondition();
+    }
+
+    private boolean girar() {
+        int presupuesto = giros;
+        for (int i = 0; i < presupuesto; i++) {
+            if (lock.tryLock()) {
+                if (presupuesto < GIROS_MAXIMOS)
+                    giros = presupuesto * 2;
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+        if (presupuesto > GIROS_MINIMOS)
+            giros = presupuesto / 2;
+        return false;
+    }
+}
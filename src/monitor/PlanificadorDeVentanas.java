@@ -0,0 +1,76 @@
+package monitor;
+
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Planificador central de aperturas de ventanas alfa. Guarda, en una
+ * {@link DelayQueue}, el instante ({@link System#nanoTime()}) en el que se
+ * cumple alfa para cada transición que tiene hilos esperando, y un único hilo
+ * daemon avisa al monitor en ese instante. Así los hilos que esperan una
+ * ventana duermen sin tiempo límite y se despiertan una sola vez, cuando la
+ * ventana realmente se abrió.
+ */
+class PlanificadorDeVentanas {
+
+    private final DelayQueue<Apertura> aperturas = new DelayQueue<>();
+    private final Thread hilo;
+
+    /**
+     * @param alAbrir acción a ejecutar, desde el hilo del planificador, cuando se
+     *                cumple el instante programado para una transición.
+     */
+    PlanificadorDeVentanas(IntConsumer alAbrir) {
+        hilo = new Thread(() -> {
+            try {
+                while (true) {
+                    alAbrir.accept(aperturas.take().transicion);
+                }
+            } catch (InterruptedException e) {
+                // Se detuvo el planificador
+            }
+        }, "planificador-ventanas");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Programa un aviso para la transición en el instante indicado.
+     *
+     * @param transicion   transición cuya ventana se abre.
+     * @param instanteNanos instante de apertura, en la escala de
+     *                     {@link System#nanoTime()}.
+     */
+    void programar(int transicion, long instanteNanos) {
+        aperturas.put(new Apertura(transicion, instanteNanos));
+    }
+
+    /** Detiene el hilo del planificador y descarta los avisos pendientes. */
+    void detener() {
+        hilo.interrupt();
+        aperturas.clear();
+    }
+
+    private static final class Apertura implements Delayed {
+        private final int transicion;
+        private final long instanteNanos;
+
+        Apertura(int transicion, long instanteNanos) {
+            this.transicion = transicion;
+            this.instanteNanos = instanteNanos;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unidad) {
+            return unidad.convert(instanteNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed otro) {
+            long diferencia = instanteNanos - ((Apertura) otro).instanteNanos;
+            return diferencia < 0 ? -1 : diferencia > 0 ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package monitor.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de una decisión de la política entre transiciones en conflicto.
+ * La duración es la de la consulta. Si los candidatos no estaban en conflicto
+ * la política no se consulta y no se emite el evento.
+ */
+@Name("monitor.DecisionPolitica")
+@Label("Decision de la politica")
+@Category({ "Monitor de Red de Petri" })
+@StackTrace(false)
+public class DecisionPolitica extends Event {
+
+    @Label("Candidatos")
+    @Description("Transiciones con hilos esperando y sensibilizadas, por ejemplo \"T2 T3\"")
+    public String candidatos;
+
+    @Label("Elegida")
+    public int elegida;
+}
@@ -0,0 +1,22 @@
+package monitor.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de un hilo que se despertó pero tuvo que volver a dormir porque
+ * su transición seguía sin tokens, fuera de ventana o no admitida por la
+ * política.
+ */
+@Name("monitor.DespertarEspurio")
+@Label("Despertar espurio")
+@Category({ "Monitor de Red de Petri" })
+@StackTrace(false)
+public class DespertarEspurio extends Event {
+
+    @Label("Transicion")
+    public int transicion;
+}
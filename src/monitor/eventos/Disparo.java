@@ -0,0 +1,27 @@
+package monitor.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de una transición disparada por {@code Monitor.fireTransition}. La
+ * duración abarca toda la llamada, desde que el hilo pide el mutex hasta que
+ * lo libera.
+ */
+@Name("monitor.Disparo")
+@Label("Transicion disparada")
+@Category({ "Monitor de Red de Petri" })
+@StackTrace(false)
+public class Disparo extends Event {
+
+    @Label("Transicion")
+    public int transicion;
+
+    @Label("Esperas")
+    @Description("Veces que el hilo durmio en la condicion antes de disparar")
+    public int esperas;
+}
@@ -0,0 +1,26 @@
+package monitor.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR de un hilo dormido en la condición de su transición. La
+ * duración es el tiempo dormido, incluido el de volver a tomar el mutex.
+ */
+@Name("monitor.Espera")
+@Label("Hilo en espera")
+@Category({ "Monitor de Red de Petri" })
+@StackTrace(false)
+public class Espera extends Event {
+
+    @Label("Transicion")
+    public int transicion;
+
+    @Label("Por ventana alfa")
+    @Description("true si la transicion tenia tokens y esperaba que se abra su ventana alfa")
+    public boolean porAlfa;
+}
@@ -0,0 +1,23 @@
+package monitor.eventos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento JFR emitido por el hilo que señala la condición de una transición.
+ */
+@Name("monitor.Senal")
+@Label("Hilo senalado")
+@Category({ "Monitor de Red de Petri" })
+@StackTrace(false)
+public class Senal extends Event {
+
+    @Label("Transicion")
+    public int transicion;
+
+    @Label("Hilos esperando")
+    public int hilosEsperando;
+}
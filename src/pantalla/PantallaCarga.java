@@ -57,6 +57,9 @@ public class PantallaCarga extends JFrame {
    */
   public static void incrementarPorcentaje(int clientesMax) {
     clientesSalientes++;
+    if (panel == null) {
+      return; // sin pantalla (ejecucion sin interfaz grafica)
+    }
     int nuevoPorcentaje = (clientesSalientes * 100) / clientesMax;
     if (nuevoPorcentaje > porcentaje) {
       porcentaje = nuevoPorcentaje;
@@ -73,6 +76,9 @@ public class PantallaCarga extends JFrame {
    * de eventos de Swing para asegurar que la operación se haga de manera segura.
    */
   public static void cerrar() {
+    if (panel == null) {
+      return;
+    }
     SwingUtilities.invokeLater(
         () -> {
           JFrame topFrame = (JFrame) SwingUtilities.getWindowAncestor(panel);
@@ -8,36 +8,29 @@ public class AlfaYBeta {
         BETA // excedió beta → loguear y permitir
     }
 
-    private boolean iniciado = false;
-    private long alfa, beta;
-    private long inicio;
+    private static final long NANOS_POR_MILI = 1_000_000L;
+
+    private boolean iniciado = false; // true mientras la ventana esta corriendo
+    private long alfa, beta; // en milisegundos
+    private long inicio; // reloj.nanoTime() al iniciar la ventana
+    private Reloj reloj = Reloj.SISTEMA;
     private boolean sinRestriccion = false;
 
     public AlfaYBeta(long alfa, long beta) {
         this.alfa = alfa;
         this.beta = beta;
         this.sinRestriccion = false;
-        this.inicio = 0;
     }
 
     public AlfaYBeta() {
         this.sinRestriccion = true;
-        this.inicio = 1;
     }
 
     public void setAlfaYBeta(long alfa, long beta) {
         this.alfa = alfa;
         this.beta = beta;
         this.sinRestriccion = false;
-        this.inicio = 0;
-    }
-
-    public void setInicio(long inicio) {
-        this.inicio = inicio;
-    }
-
-    public long getInicio() {
-        return inicio;
+        this.iniciado = false;
     }
 
     public long getBeta() {
@@ -48,32 +41,67 @@ public class AlfaYBeta {
         return alfa;
     }
 
+    /** Cambia la fuente de tiempo de la ventana (por ejemplo, por un reloj virtual). */
+    public void setReloj(Reloj reloj) {
+        this.reloj = reloj;
+    }
+
+    /** Indica si la transición tiene una ventana de tiempo asociada. */
+    public boolean tieneRestriccion() {
+        return !sinRestriccion;
+    }
+
+    /** Indica si la ventana está corriendo (se inició y no se reinició). */
+    public boolean estaIniciada() {
+        return iniciado;
+    }
+
+    /** Inicia la ventana en el instante actual. */
     public void iniciar() {
-        this.inicio = System.currentTimeMillis();
+        if (sinRestriccion)
+            return;
+        this.inicio = reloj.nanoTime();
         this.iniciado = true;
     }
 
+    /**
+     * Detiene la ventana (por ejemplo, al disparar la transición). Hasta que se
+     * vuelva a iniciar, la transición no tiene restricción de tiempo.
+     */
+    public void reiniciar() {
+        this.iniciado = false;
+    }
+
+    /**
+     * Devuelve el instante, en la escala del reloj de la ventana, en el que
+     * se cumple alfa. Solo tiene sentido si la ventana está iniciada.
+     */
+    public long getAperturaNanos() {
+        return inicio + alfa * NANOS_POR_MILI;
+    }
+
     public Estado verificarVentana() {
         if (sinRestriccion)
             return Estado.OK;
 
-        // EVITAR errores en el primer uso
+        // Sin ventana en curso no hay restriccion de tiempo
         if (!iniciado) {
-            return Estado.OK; // permite el primer disparo
+            return Estado.OK;
         }
 
-        long elapsed = System.currentTimeMillis() - inicio;
+        long transcurrido = reloj.nanoTime() - inicio;
 
-        if (elapsed < alfa)
+        if (transcurrido < alfa * NANOS_POR_MILI)
             return Estado.ALFA;
 
-        if (elapsed > beta)
+        if (transcurrido > beta * NANOS_POR_MILI)
             return Estado.BETA;
 
         return Estado.OK;
     }
 
+    /** Devuelve cuántos milisegundos se excedió beta (negativo si no se excedió). */
     public long getTiempoExcedido() {
-        return System.currentTimeMillis() - inicio - beta;
+        return (reloj.nanoTime() - inicio) / NANOS_POR_MILI - beta;
     }
 }
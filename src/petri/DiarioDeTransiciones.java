@@ -0,0 +1,328 @@
+package petri;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Registro de solo-agregado de las transiciones disparadas. Cada disparo ocupa
+ * un {@code short} dentro de bloques de tamaño fijo, de modo que agregar es
+ * O(1) y no copia lo ya registrado (a diferencia de concatenar un
+ * {@link String}). Las redes con más de {@value #MAXIMO_ANGOSTO} transiciones
+ * usan un diario ancho, con un {@code int} por disparo.
+ *
+ * Opcionalmente los bloques completos se vuelcan a un archivo y se releen
+ * mapeándolos en memoria, con lo que el diario ocupa un único bloque en el
+ * heap sin importar la duración de la corrida.
+ *
+ * Para corridas largas que validan la secuencia en línea (ver
+ * {@link VerificadorEnLinea}) existe un diario que no retiene nada
+ * ({@link #sinRetener()}): solo cuenta los disparos.
+ *
+ * El diario no es seguro para escrituras concurrentes: quien escribe debe
+ * hacerlo bajo la exclusión mutua de la red. Los lectores deben leer una vez
+ * que la escritura terminó o sincronizarse con el escritor.
+ */
+public class DiarioDeTransiciones {
+
+    public static final int TAMANIO_BLOQUE = 1 << 16; // entradas por bloque
+    /** Cantidad máxima de transiciones de un diario angosto (un short por disparo). */
+    public static final int MAXIMO_ANGOSTO = Short.MAX_VALUE + 1;
+
+    private final boolean ancho; // true: un int por entrada; false: un short
+    private final boolean retiene; // false: solo se cuentan las entradas
+    private final int bytesBloque;
+    private final ArrayList<Object> bloques = new ArrayList<>(); // bloques en memoria (short[] o int[])
+    private short[] actual; // bloque en el que se esta escribiendo (diario angosto)
+    private int[] actualAncho; // bloque en el que se esta escribiendo (diario ancho)
+    private int posicion; // proxima posicion libre dentro del bloque actual
+    private long tamanio; // cantidad total de entradas
+
+    private final FileChannel desborde; // null si todo queda en memoria
+    private final ByteBuffer bufferEscritura;
+    private long bloquesEnDisco;
+
+    /** Crea un diario angosto que guarda todos los bloques en memoria. */
+    public DiarioDeTransiciones() {
+        this(false);
+    }
+
+    /**
+     * Crea un diario que guarda todos los bloques en memoria.
+     *
+     * @param ancho si es {@code true}, cada entrada ocupa un {@code int} y se
+     *              admite cualquier número de transición; si no, un
+     *              {@code short}.
+     */
+    public DiarioDeTransiciones(boolean ancho) {
+        this(ancho, true);
+    }
+
+    private DiarioDeTransiciones(boolean ancho, boolean retiene) {
+        this.ancho = ancho;
+        this.retiene = retiene;
+        this.bytesBloque = TAMANIO_BLOQUE * (ancho ? Integer.BYTES : Short.BYTES);
+        this.desborde = null;
+        this.bufferEscritura = null;
+        if (retiene) {
+            nuevoBloque();
+            bloques.add(ancho ? actualAncho : actual);
+        }
+    }
+
+    /**
+     * Crea un diario que no guarda las transiciones, solo su cantidad. Admite
+     * cualquier número de transición; {@link #get(long)} y {@link #cursor()} no
+     * están disponibles.
+     */
+    public static DiarioDeTransiciones sinRetener() {
+        return new DiarioDeTransiciones(true, false);
+    }
+
+    /**
+     * Crea un diario que vuelca cada bloque completo al archivo indicado (que se
+     * trunca si existe) y lo relee mediante un mapeo en memoria.
+     *
+     * @param archivo archivo de desborde.
+     * @throws IOException si no se puede abrir el archivo.
+     */
+    public DiarioDeTransiciones(Path archivo) throws IOException {
+        this(archivo, false);
+    }
+
+    /**
+     * Igual que {@link #DiarioDeTransiciones(Path)}, eligiendo el ancho de las
+     * entradas.
+     *
+     * @param archivo archivo de desborde.
+     * @param ancho   si es {@code true}, cada entrada ocupa un {@code int}.
+     * @throws IOException si no se puede abrir el archivo.
+     */
+    public DiarioDeTransiciones(Path archivo, boolean ancho) throws IOException {
+        this.ancho = ancho;
+        this.retiene = true;
+        this.bytesBloque = TAMANIO_BLOQUE * (ancho ? Integer.BYTES : Short.BYTES);
+        this.desborde = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.bufferEscritura = ByteBuffer.allocateDirect(bytesBloque).order(ByteOrder.nativeOrder());
+        nuevoBloque();
+    }
+
+    /** Devuelve la cantidad de transiciones distintas que el diario puede registrar. */
+    public int getMaximoTransiciones() {
+        return ancho ? Integer.MAX_VALUE : MAXIMO_ANGOSTO;
+    }
+
+    /**
+     * Agrega una transición al final del diario.
+     *
+     * @param transicion número de transición (entre 0 y
+     *                   {@link #getMaximoTransiciones()} - 1).
+     */
+    public void agregar(int transicion) {
+        if (!retiene) {
+            tamanio++;
+            return;
+        }
+        if (ancho)
+            actualAncho[posicion++] = transicion;
+        else
+            actual[posicion++] = (short) transicion;
+        tamanio++;
+        if (posicion == TAMANIO_BLOQUE) {
+            cerrarBloque();
+        }
+    }
+
+    /** Devuelve la cantidad de transiciones registradas. */
+    public long tamanio() {
+        return tamanio;
+    }
+
+    /** Indica si el diario guarda las transiciones o solo las cuenta. */
+    public boolean retiene() {
+        return retiene;
+    }
+
+    /**
+     * Devuelve la transición registrada en la posición indicada.
+     *
+     * @throws IndexOutOfBoundsException si la posición no existe.
+     * @throws IllegalStateException     si el diario no retiene las transiciones.
+     */
+    public int get(long indice) {
+        verificarQueRetiene();
+        if (indice < 0 || indice >= tamanio) {
+            throw new IndexOutOfBoundsException("Posicion fuera del diario: " + indice);
+        }
+        long bloque = indice / TAMANIO_BLOQUE;
+        int desplazamiento = (int) (indice % TAMANIO_BLOQUE);
+        if (desborde != null) {
+            if (bloque == bloquesEnDisco)
+                return ancho ? actualAncho[desplazamiento] : actual[desplazamiento];
+            ByteBuffer mapeado = mapearBloque(bloque);
+            return ancho ? mapeado.getInt(desplazamiento * Integer.BYTES)
+                    : mapeado.getShort(desplazamiento * Short.BYTES);
+        }
+        Object enMemoria = bloques.get((int) bloque);
+        return ancho ? ((int[]) enMemoria)[desplazamiento] : ((short[]) enMemoria)[desplazamiento];
+    }
+
+    /**
+     * Crea un cursor que recorre las transiciones registradas hasta el momento de
+     * su creación, en orden de disparo.
+     *
+     * @throws IllegalStateException si el diario no retiene las transiciones.
+     */
+    public Cursor cursor() {
+        verificarQueRetiene();
+        return new Cursor(tamanio);
+    }
+
+    /**
+     * Vista de compatibilidad con el formato anterior: {@code "T0T1T2..."}. Arma
+     * la cadena completa en cada llamada.
+     */
+    public String aCadena() {
+        StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, tamanio * 3));
+        Cursor cursor = cursor();
+        while (cursor.haySiguiente()) {
+            sb.append('T').append(cursor.siguiente());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return aCadena();
+    }
+
+    /** Cierra el archivo de desborde, si lo hay. */
+    public void cerrar() throws IOException {
+        if (desborde != null) {
+            desborde.close();
+        }
+    }
+
+    private void verificarQueRetiene() {
+        if (!retiene) {
+            throw new IllegalStateException("El diario no retiene las transiciones.");
+        }
+    }
+
+    private void nuevoBloque() {
+        if (ancho)
+            actualAncho = new int[TAMANIO_BLOQUE];
+        else
+            actual = new short[TAMANIO_BLOQUE];
+    }
+
+    private void cerrarBloque() {
+        posicion = 0;
+        if (desborde == null) {
+            nuevoBloque();
+            bloques.add(ancho ? actualAncho : actual);
+            return;
+        }
+        bufferEscritura.clear();
+        if (ancho)
+            bufferEscritura.asIntBuffer().put(actualAncho);
+        else
+            bufferEscritura.asShortBuffer().put(actual);
+        bufferEscritura.limit(bytesBloque);
+        try {
+            long offset = bloquesEnDisco * bytesBloque;
+            while (bufferEscritura.hasRemaining()) {
+                offset += desborde.write(bufferEscritura, offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo volcar el diario de transiciones.", e);
+        }
+        bloquesEnDisco++;
+        // Un cursor puede seguir leyendo el bloque recien volcado desde memoria: se
+        // escribe en uno nuevo en lugar de pisarlo
+        nuevoBloque();
+    }
+
+    private ByteBuffer mapearBloque(long bloque) {
+        try {
+            return desborde.map(FileChannel.MapMode.READ_ONLY, bloque * bytesBloque, bytesBloque)
+                    .order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo mapear el diario de transiciones.", e);
+        }
+    }
+
+    /**
+     * Lector secuencial del diario. Recorre bloque por bloque sin crear objetos
+     * por entrada; los bloques volcados a disco se mapean de a uno.
+     */
+    public class Cursor {
+        private final long fin;
+        private long indice;
+        private long bloqueCargado = -1;
+        private short[] bloqueMemoria;
+        private int[] bloqueMemoriaAncho;
+        private ShortBuffer bloqueMapeado;
+        private IntBuffer bloqueMapeadoAncho;
+
+        private Cursor(long fin) {
+            this.fin = fin;
+        }
+
+        public boolean haySiguiente() {
+            return indice < fin;
+        }
+
+        /** Devuelve la próxima transición y avanza el cursor. */
+        public int siguiente() {
+            if (indice >= fin) {
+                throw new IndexOutOfBoundsException("El cursor llego al final del diario.");
+            }
+            long bloque = indice / TAMANIO_BLOQUE;
+            int desplazamiento = (int) (indice % TAMANIO_BLOQUE);
+            indice++;
+            if (bloque != bloqueCargado) {
+                cargar(bloque);
+            }
+            if (ancho)
+                return bloqueMemoriaAncho != null ? bloqueMemoriaAncho[desplazamiento]
+                        : bloqueMapeadoAncho.get(desplazamiento);
+            return bloqueMemoria != null ? bloqueMemoria[desplazamiento] : bloqueMapeado.get(desplazamiento);
+        }
+
+        /** Cantidad de transiciones ya leídas. */
+        public long posicion() {
+            return indice;
+        }
+
+        private void cargar(long bloque) {
+            bloqueCargado = bloque;
+            bloqueMemoria = null;
+            bloqueMemoriaAncho = null;
+            bloqueMapeado = null;
+            bloqueMapeadoAncho = null;
+            if (desborde == null) {
+                Object enMemoria = bloques.get((int) bloque);
+                if (ancho)
+                    bloqueMemoriaAncho = (int[]) enMemoria;
+                else
+                    bloqueMemoria = (short[]) enMemoria;
+            } else if (bloque == bloquesEnDisco) {
+                bloqueMemoria = actual;
+                bloqueMemoriaAncho = actualAncho;
+            } else if (ancho) {
+                bloqueMapeadoAncho = mapearBloque(bloque).asIntBuffer();
+            } else {
+                bloqueMapeado = mapearBloque(bloque).asShortBuffer();
+            }
+        }
+    }
+}
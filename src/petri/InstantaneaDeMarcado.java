@@ -0,0 +1,59 @@
+package petri;
+
+/**
+ * Copia consistente del estado de una {@link RedDePetri}: el marcado, la
+ * cantidad de disparos y de clientes salientes, y el instante del último
+ * disparo, todos del mismo momento (entre dos disparos). Se obtiene con
+ * {@link RedDePetri#getInstantanea(InstantaneaDeMarcado)}, que puede reusar la
+ * misma instancia en cada muestra para no crear objetos.
+ */
+public class InstantaneaDeMarcado {
+
+    final int[] marcado;
+    long version;
+    long disparos;
+    int clientesSalientes;
+    long instanteNanos;
+
+    /**
+     * @param cantidadLugares cantidad de lugares de la red a copiar.
+     */
+    public InstantaneaDeMarcado(int cantidadLugares) {
+        this.marcado = new int[cantidadLugares];
+    }
+
+    /** Tokens del lugar. */
+    public int getTokens(int lugar) {
+        return marcado[lugar];
+    }
+
+    /** Devuelve una copia del marcado. */
+    public int[] getMarcado() {
+        return marcado.clone();
+    }
+
+    /**
+     * Versión de la red en el momento de la copia. Crece con cada disparo, así
+     * que dos instantáneas con la misma versión son iguales.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Cantidad total de disparos hasta la copia. */
+    public long getDisparos() {
+        return disparos;
+    }
+
+    public int getClientesSalientes() {
+        return clientesSalientes;
+    }
+
+    /**
+     * Instante ({@link System#nanoTime()}) del último disparo incluido en la
+     * copia, o 0 si todavía no hubo disparos.
+     */
+    public long getInstanteNanos() {
+        return instanteNanos;
+    }
+}
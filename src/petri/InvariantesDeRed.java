@@ -0,0 +1,348 @@
+package petri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * T-invariantes y P-invariantes mínimos de una red, calculados a partir de la
+ * matriz de incidencia con el algoritmo de Farkas (eliminación de
+ * Fourier–Motzkin sobre la tabla {@code [C | I]}): se anula una restricción por
+ * vez combinando con coeficientes positivos cada fila positiva con cada fila
+ * negativa, y se descartan las filas cuyo soporte contiene al de otra. Quedan
+ * los invariantes semipositivos de soporte mínimo, con coeficientes enteros
+ * coprimos.
+ *
+ * Para los T-invariantes se ignoran los lugares de frontera (los que solo pierden
+ * tokens, como p0 con los clientes por atender, o solo los reciben): representan
+ * el entorno y solo cuentan cuántas veces se completa cada invariante. Además,
+ * cada T-invariante se ordena como la secuencia en que lo dispara un cliente,
+ * simulándolo desde el marcado inicial (ver {@link #getSecuenciasDeDisparo()}),
+ * que es lo que usa {@link ValidadorDeInvariantes}.
+ *
+ * Con los P-invariantes y el marcado inicial, {@link #cumpleInvariantesP(int[])}
+ * comprueba que un marcado sea consistente en O(lugares de los invariantes).
+ *
+ * La cantidad de filas intermedias puede crecer exponencialmente con el tamaño
+ * de la red: está pensado para redes como la de la agencia, no para las redes
+ * sintéticas de miles de lugares.
+ */
+public class InvariantesDeRed {
+
+    private final int[][] matriz; // densa, [lugares][transiciones]
+    private final int[] marcadoInicial;
+    private final boolean[] frontera; // por lugar: se ignora para los T-invariantes
+    private final int[][] invariantesT; // por invariante: veces que dispara cada transicion
+    private final int[][] lugaresP; // por P-invariante: lugares de su soporte
+    private final int[][] pesosP; // por P-invariante: peso de cada lugar del soporte
+    private final long[] constantesP; // por P-invariante: suma pesada del marcado inicial
+    private int[][] secuencias; // se calculan la primera vez que se piden
+
+    private InvariantesDeRed(int[][] matriz, int[] marcadoInicial) {
+        int lugares = matriz.length;
+        int transiciones = matriz[0].length;
+        this.matriz = matriz;
+        this.marcadoInicial = marcadoInicial.clone();
+
+        frontera = new boolean[lugares];
+        List<int[]> interiores = new ArrayList<>();
+        for (int p = 0; p < lugares; p++) {
+            boolean recibe = false;
+            boolean entrega = false;
+            for (int t = 0; t < transiciones; t++) {
+                recibe |= matriz[p][t] > 0;
+                entrega |= matriz[p][t] < 0;
+            }
+            frontera[p] = recibe != entrega;
+            if (!frontera[p])
+                interiores.add(matriz[p]);
+        }
+
+        // T-invariantes: C x = 0, una fila por transicion con sus restricciones
+        // (los lugares interiores) como columnas
+        int[][] porTransicion = new int[transiciones][interiores.size()];
+        for (int i = 0; i < interiores.size(); i++)
+            for (int t = 0; t < transiciones; t++)
+                porTransicion[t][i] = interiores.get(i)[t];
+        invariantesT = farkas(porTransicion);
+
+        // P-invariantes: y C = 0, una fila por lugar con las transiciones como columnas
+        int[][] invariantesP = farkas(matriz);
+        lugaresP = new int[invariantesP.length][];
+        pesosP = new int[invariantesP.length][];
+        constantesP = new long[invariantesP.length];
+        for (int i = 0; i < invariantesP.length; i++) {
+            int soporte = 0;
+            for (int y : invariantesP[i])
+                if (y != 0)
+                    soporte++;
+            lugaresP[i] = new int[soporte];
+            pesosP[i] = new int[soporte];
+            int k = 0;
+            for (int p = 0; p < lugares; p++) {
+                if (invariantesP[i][p] != 0) {
+                    lugaresP[i][k] = p;
+                    pesosP[i][k++] = invariantesP[i][p];
+                    constantesP[i] += (long) invariantesP[i][p] * marcadoInicial[p];
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula los invariantes de la red.
+     *
+     * @param matrizIncidencia matriz densa {@code [lugares][transiciones]}.
+     * @param marcadoInicial   marcado inicial, para ordenar los T-invariantes y
+     *                         fijar las constantes de los P-invariantes.
+     * @throws IllegalArgumentException si la matriz no es rectangular o el
+     *                                  marcado no tiene un valor por lugar.
+     * @throws ArithmeticException      si algún coeficiente intermedio desborda.
+     */
+    public static InvariantesDeRed calcular(int[][] matrizIncidencia, int[] marcadoInicial) {
+        for (int[] fila : matrizIncidencia) {
+            if (fila.length != matrizIncidencia[0].length) {
+                throw new IllegalArgumentException("La matriz de incidencia debe ser rectangular.");
+            }
+        }
+        if (marcadoInicial.length != matrizIncidencia.length) {
+            throw new IllegalArgumentException("El marcado debe tener " + matrizIncidencia.length + " lugares.");
+        }
+        return new InvariantesDeRed(matrizIncidencia, marcadoInicial);
+    }
+
+    /** Igual que {@link #calcular(int[][], int[])}, desde la matriz comprimida. */
+    public static InvariantesDeRed calcular(MatrizIncidenciaDispersa matrizIncidencia, int[] marcadoInicial) {
+        return calcular(matrizIncidencia.aDensa(), marcadoInicial);
+    }
+
+    /**
+     * Algoritmo de Farkas sobre la tabla {@code [a | I]}: devuelve, como
+     * vectores sobre las filas de {@code a}, las combinaciones semipositivas
+     * mínimas que anulan todas sus columnas.
+     */
+    private static int[][] farkas(int[][] a) {
+        int filas = a.length;
+        int restricciones = filas == 0 ? 0 : a[0].length;
+        int ancho = restricciones + filas;
+        List<long[]> tabla = new ArrayList<>();
+        for (int i = 0; i < filas; i++) {
+            long[] fila = new long[ancho];
+            for (int j = 0; j < restricciones; j++)
+                fila[j] = a[i][j];
+            fila[restricciones + i] = 1;
+            tabla.add(fila);
+        }
+
+        for (int j = 0; j < restricciones; j++) {
+            List<long[]> siguiente = new ArrayList<>();
+            List<long[]> positivas = new ArrayList<>();
+            List<long[]> negativas = new ArrayList<>();
+            for (long[] fila : tabla) {
+                if (fila[j] == 0)
+                    siguiente.add(fila);
+                else if (fila[j] > 0)
+                    positivas.add(fila);
+                else
+                    negativas.add(fila);
+            }
+            for (long[] positiva : positivas) {
+                for (long[] negativa : negativas) {
+                    long[] combinada = new long[ancho];
+                    long cp = -negativa[j];
+                    long cn = positiva[j];
+                    for (int k = 0; k < ancho; k++)
+                        combinada[k] = Math.addExact(Math.multiplyExact(cp, positiva[k]),
+                                Math.multiplyExact(cn, negativa[k]));
+                    normalizar(combinada);
+                    siguiente.add(combinada);
+                }
+            }
+            tabla = minimas(siguiente, restricciones);
+        }
+
+        int[][] resultado = new int[tabla.size()][filas];
+        for (int i = 0; i < tabla.size(); i++)
+            for (int k = 0; k < filas; k++)
+                resultado[i][k] = Math.toIntExact(tabla.get(i)[restricciones + k]);
+        return resultado;
+    }
+
+    /** Divide la fila por el máximo común divisor de sus coeficientes. */
+    private static void normalizar(long[] fila) {
+        long mcd = 0;
+        for (long v : fila) {
+            long a = Math.abs(v);
+            long b = mcd;
+            while (b != 0) {
+                long r = a % b;
+                a = b;
+                b = r;
+            }
+            mcd = a;
+        }
+        if (mcd > 1)
+            for (int k = 0; k < fila.length; k++)
+                fila[k] /= mcd;
+    }
+
+    /**
+     * Se queda con las filas de soporte mínimo: descarta las que tienen el
+     * soporte de otra incluido en el suyo (y las repetidas).
+     */
+    private static List<long[]> minimas(List<long[]> tabla, int desde) {
+        int ancho = tabla.isEmpty() ? 0 : tabla.get(0).length - desde;
+        long[][] soportes = new long[tabla.size()][(ancho + 63) >>> 6];
+        for (int i = 0; i < tabla.size(); i++)
+            for (int k = 0; k < ancho; k++)
+                if (tabla.get(i)[desde + k] != 0)
+                    soportes[i][k >>> 6] |= 1L << k;
+
+        List<long[]> resultado = new ArrayList<>();
+        for (int i = 0; i < tabla.size(); i++) {
+            boolean minima = true;
+            for (int o = 0; o < tabla.size() && minima; o++) {
+                if (o == i || !incluido(soportes[o], soportes[i]))
+                    continue;
+                // Con soportes iguales se conserva solo la primera
+                minima = Arrays.equals(soportes[o], soportes[i]) && o > i;
+            }
+            if (minima)
+                resultado.add(tabla.get(i));
+        }
+        return resultado;
+    }
+
+    private static boolean incluido(long[] a, long[] b) {
+        for (int w = 0; w < a.length; w++)
+            if ((a[w] & ~b[w]) != 0)
+                return false;
+        return true;
+    }
+
+    /**
+     * T-invariantes mínimos, cada uno como la cantidad de veces que dispara cada
+     * transición.
+     */
+    public int[][] getInvariantesT() {
+        return copiar(invariantesT);
+    }
+
+    public int getCantidadInvariantesT() {
+        return invariantesT.length;
+    }
+
+    /**
+     * Cada T-invariante como la secuencia ordenada de sus disparos, en el mismo
+     * orden que {@link #getInvariantesT()}. La secuencia se obtiene simulando el
+     * invariante solo, desde el marcado inicial (con los lugares de frontera
+     * siempre disponibles), y disparando cada vez la transición sensibilizada
+     * de menor número que todavía le queda.
+     *
+     * @throws IllegalStateException si algún invariante no se puede disparar
+     *                               completo desde el marcado inicial.
+     */
+    public synchronized int[][] getSecuenciasDeDisparo() {
+        if (secuencias == null) {
+            int[][] calculadas = new int[invariantesT.length][];
+            for (int i = 0; i < invariantesT.length; i++)
+                calculadas[i] = ordenarDisparos(i);
+            secuencias = calculadas;
+        }
+        return copiar(secuencias);
+    }
+
+    private int[] ordenarDisparos(int invariante) {
+        int[] restantes = invariantesT[invariante].clone();
+        int largo = 0;
+        for (int veces : restantes)
+            largo += veces;
+        int[] marcado = marcadoInicial.clone();
+        int[] secuencia = new int[largo];
+        for (int n = 0; n < largo; n++) {
+            int elegida = -1;
+            for (int t = 0; t < restantes.length && elegida < 0; t++)
+                if (restantes[t] > 0 && sensibilizada(marcado, t))
+                    elegida = t;
+            if (elegida < 0) {
+                throw new IllegalStateException("El T-invariante " + Arrays.toString(invariantesT[invariante])
+                        + " no se puede disparar completo desde el marcado inicial.");
+            }
+            for (int p = 0; p < marcado.length; p++)
+                marcado[p] += matriz[p][elegida];
+            restantes[elegida]--;
+            secuencia[n] = elegida;
+        }
+        return secuencia;
+    }
+
+    private boolean sensibilizada(int[] marcado, int t) {
+        for (int p = 0; p < marcado.length; p++)
+            if (!frontera[p] && marcado[p] + matriz[p][t] < 0)
+                return false;
+        return true;
+    }
+
+    /** Indica si el lugar se ignoró para los T-invariantes por ser de frontera. */
+    public boolean esLugarDeFrontera(int lugar) {
+        return frontera[lugar];
+    }
+
+    /** P-invariantes mínimos, cada uno como el peso de cada lugar. */
+    public int[][] getInvariantesP() {
+        int[][] invariantes = new int[lugaresP.length][matriz.length];
+        for (int i = 0; i < lugaresP.length; i++)
+            for (int k = 0; k < lugaresP[i].length; k++)
+                invariantes[i][lugaresP[i][k]] = pesosP[i][k];
+        return invariantes;
+    }
+
+    public int getCantidadInvariantesP() {
+        return lugaresP.length;
+    }
+
+    /** Suma pesada de los tokens del P-invariante, que se conserva en cada disparo. */
+    public long getConstanteP(int invariante) {
+        return constantesP[invariante];
+    }
+
+    /**
+     * Comprueba que el marcado conserve todos los P-invariantes, en
+     * O(lugares de los invariantes) y sin crear objetos.
+     */
+    public boolean cumpleInvariantesP(int[] marcado) {
+        return primerInvariantePIncumplido(marcado) < 0;
+    }
+
+    /** Devuelve el primer P-invariante que el marcado no conserva, o -1 si los conserva todos. */
+    public int primerInvariantePIncumplido(int[] marcado) {
+        for (int i = 0; i < lugaresP.length; i++) {
+            long suma = 0;
+            for (int k = 0; k < lugaresP[i].length; k++)
+                suma += (long) pesosP[i][k] * marcado[lugaresP[i][k]];
+            if (suma != constantesP[i])
+                return i;
+        }
+        return -1;
+    }
+
+    /** Devuelve el P-invariante como texto, por ejemplo {@code "m1 + m2 = 1"}. */
+    public String describirInvarianteP(int invariante) {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < lugaresP[invariante].length; k++) {
+            if (k > 0)
+                sb.append(" + ");
+            if (pesosP[invariante][k] != 1)
+                sb.append(pesosP[invariante][k]);
+            sb.append('m').append(lugaresP[invariante][k]);
+        }
+        return sb.append(" = ").append(constantesP[invariante]).toString();
+    }
+
+    private static int[][] copiar(int[][] matriz) {
+        int[][] copia = new int[matriz.length][];
+        for (int i = 0; i < matriz.length; i++)
+            copia[i] = matriz[i].clone();
+        return copia;
+    }
+}
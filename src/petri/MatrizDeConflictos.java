@@ -0,0 +1,130 @@
+package petri;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matriz de conflicto estructural entre transiciones, precalculada una sola vez
+ * a partir de la matriz de incidencia. Dos transiciones están en conflicto si
+ * comparten al menos un lugar de entrada.
+ *
+ * Cada fila es un bitset de transiciones (sin incluir a la propia), guardado
+ * solo con sus palabras de 64 bits distintas de cero, por lo que la memoria
+ * escala con la cantidad de pares en conflicto y no con transiciones². Saber si
+ * un conjunto de candidatas tiene algún conflicto cuesta unos pocos AND de
+ * palabras por candidata.
+ */
+public class MatrizDeConflictos {
+
+    private final int cantidadTransiciones;
+    private final int[][] indicesPalabra; // por transicion: indices de palabras no nulas, en orden creciente
+    private final long[][] palabras; // por transicion: palabras no nulas de su fila
+
+    public MatrizDeConflictos(MatrizIncidenciaDispersa matriz) {
+        cantidadTransiciones = matriz.getCantidadTransiciones();
+        indicesPalabra = new int[cantidadTransiciones][];
+        palabras = new long[cantidadTransiciones][];
+
+        int[] lugares = matriz.getLugaresDeArcos();
+        int[] valoresColumna = matriz.getValoresPorColumna();
+        int[] transiciones = matriz.getTransicionesDeArcos();
+        int[] valoresFila = matriz.getValoresPorFila();
+
+        long[] fila = new long[(cantidadTransiciones + 63) >>> 6];
+        List<Integer> tocadas = new ArrayList<>();
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            // Union de las consumidoras de cada lugar de entrada de t
+            for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+                if (valoresColumna[i] >= 0)
+                    continue;
+                int p = lugares[i];
+                for (int j = matriz.inicioFila(p); j < matriz.finFila(p); j++) {
+                    int otra = transiciones[j];
+                    if (valoresFila[j] < 0 && otra != t) {
+                        if (fila[otra >>> 6] == 0)
+                            tocadas.add(otra >>> 6);
+                        fila[otra >>> 6] |= 1L << otra;
+                    }
+                }
+            }
+            tocadas.sort(null);
+            indicesPalabra[t] = new int[tocadas.size()];
+            palabras[t] = new long[tocadas.size()];
+            for (int k = 0; k < tocadas.size(); k++) {
+                int w = tocadas.get(k);
+                indicesPalabra[t][k] = w;
+                palabras[t][k] = fila[w];
+                fila[w] = 0;
+            }
+            tocadas.clear();
+        }
+    }
+
+    public int getCantidadTransiciones() {
+        return cantidadTransiciones;
+    }
+
+    /** Indica si dos transiciones distintas comparten algún lugar de entrada. */
+    public boolean enConflicto(int t1, int t2) {
+        int[] indices = indicesPalabra[t1];
+        int w = t2 >>> 6;
+        int bajo = 0;
+        int alto = indices.length - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (indices[medio] < w)
+                bajo = medio + 1;
+            else if (indices[medio] > w)
+                alto = medio - 1;
+            else
+                return (palabras[t1][medio] & (1L << t2)) != 0;
+        }
+        return false;
+    }
+
+    /**
+     * Indica si algún par de transiciones del conjunto está en conflicto.
+     *
+     * @param candidatos bitset de transiciones (bit t de la palabra t/64).
+     */
+    public boolean hayConflicto(long[] candidatos) {
+        for (int w = 0; w < candidatos.length; w++) {
+            long palabra = candidatos[w];
+            while (palabra != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+                int[] indices = indicesPalabra[t];
+                long[] fila = palabras[t];
+                for (int k = 0; k < indices.length; k++) {
+                    if (indices[k] < candidatos.length && (candidatos[indices[k]] & fila[k]) != 0)
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Indica si algún par de transiciones de la lista está en conflicto. */
+    public boolean hayConflicto(List<Integer> candidatos) {
+        for (int i = 0; i < candidatos.size(); i++) {
+            for (int j = i + 1; j < candidatos.size(); j++) {
+                if (enConflicto(candidatos.get(i), candidatos.get(j)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Agrega (OR) al bitset destino las transiciones en conflicto con la dada.
+     *
+     * @param t       transición.
+     * @param destino bitset de al menos (transiciones + 63) / 64 palabras.
+     */
+    public void agregarConflictos(int t, long[] destino) {
+        int[] indices = indicesPalabra[t];
+        long[] fila = palabras[t];
+        for (int k = 0; k < indices.length; k++)
+            destino[indices[k]] |= fila[k];
+    }
+}
@@ -0,0 +1,316 @@
+package petri;
+
+import java.util.Arrays;
+
+/**
+ * Representación comprimida de la matriz de incidencia de una red de Petri.
+ * Guarda solo los arcos (celdas distintas de cero) dos veces: por columnas
+ * (CSC, una columna por transición) para recorrer los lugares que toca una
+ * transición, y por filas (CSR, una fila por lugar) para recorrer las
+ * transiciones que tocan un lugar. Dentro de cada columna los lugares quedan
+ * ordenados de menor a mayor, y dentro de cada fila las transiciones también.
+ * La memoria y el costo de las consultas escalan con la cantidad de arcos y no
+ * con lugares × transiciones.
+ */
+public class MatrizIncidenciaDispersa {
+
+    private final int cantidadLugares;
+    private final int cantidadTransiciones;
+
+    // CSC: arcos de la transicion t en [inicioColumna[t], inicioColumna[t + 1])
+    private final int[] inicioColumna;
+    private final int[] lugarDeArco;
+    private final int[] valorColumna;
+
+    // CSR: arcos del lugar p en [inicioFila[p], inicioFila[p + 1])
+    private final int[] inicioFila;
+    private final int[] transicionDeArco;
+    private final int[] valorFila;
+
+    private MatrizIncidenciaDispersa(int cantidadLugares, int cantidadTransiciones, int[] inicioColumna,
+            int[] lugarDeArco, int[] valorColumna) {
+        this.cantidadLugares = cantidadLugares;
+        this.cantidadTransiciones = cantidadTransiciones;
+        this.inicioColumna = inicioColumna;
+        this.lugarDeArco = lugarDeArco;
+        this.valorColumna = valorColumna;
+
+        // Se transpone la representacion por columnas para obtener la de filas
+        int arcos = lugarDeArco.length;
+        inicioFila = new int[cantidadLugares + 1];
+        for (int i = 0; i < arcos; i++)
+            inicioFila[lugarDeArco[i] + 1]++;
+        for (int p = 0; p < cantidadLugares; p++)
+            inicioFila[p + 1] += inicioFila[p];
+        transicionDeArco = new int[arcos];
+        valorFila = new int[arcos];
+        int[] siguiente = new int[cantidadLugares];
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            for (int i = inicioColumna[t]; i < inicioColumna[t + 1]; i++) {
+                int p = lugarDeArco[i];
+                int destino = inicioFila[p] + siguiente[p]++;
+                transicionDeArco[destino] = t;
+                valorFila[destino] = valorColumna[i];
+            }
+        }
+    }
+
+    /**
+     * Construye la representación comprimida a partir de una matriz densa
+     * {@code [lugares][transiciones]}.
+     *
+     * @param matrizIncidencia matriz densa de incidencia.
+     * @return la matriz comprimida equivalente.
+     */
+    public static MatrizIncidenciaDispersa desdeDensa(int[][] matrizIncidencia) {
+        int lugares = matrizIncidencia.length;
+        int transiciones = matrizIncidencia[0].length;
+
+        int[] inicioColumna = new int[transiciones + 1];
+        for (int p = 0; p < lugares; p++) {
+            if (matrizIncidencia[p].length != transiciones) {
+                throw new IllegalArgumentException("La matriz de incidencia debe ser rectangular.");
+            }
+            for (int t = 0; t < transiciones; t++) {
+                if (matrizIncidencia[p][t] != 0)
+                    inicioColumna[t + 1]++;
+            }
+        }
+        for (int t = 0; t < transiciones; t++)
+            inicioColumna[t + 1] += inicioColumna[t];
+
+        int[] lugarDeArco = new int[inicioColumna[transiciones]];
+        int[] valorColumna = new int[lugarDeArco.length];
+        int[] siguiente = new int[transiciones];
+        for (int p = 0; p < lugares; p++) {
+            for (int t = 0; t < transiciones; t++) {
+                int valor = matrizIncidencia[p][t];
+                if (valor != 0) {
+                    int destino = inicioColumna[t] + siguiente[t]++;
+                    lugarDeArco[destino] = p;
+                    valorColumna[destino] = valor;
+                }
+            }
+        }
+        return new MatrizIncidenciaDispersa(lugares, transiciones, inicioColumna, lugarDeArco, valorColumna);
+    }
+
+    /**
+     * Construye la representación comprimida directamente a partir de una lista
+     * de arcos, sin pasar por la matriz densa. Sirve para redes grandes en las que
+     * lugares × transiciones no entra en memoria. Los arcos pueden venir en
+     * cualquier orden; los de valor cero se ignoran.
+     *
+     * @param lugares          cantidad de lugares.
+     * @param transiciones     cantidad de transiciones.
+     * @param lugarDeArco      lugar de cada arco.
+     * @param transicionDeArco transición de cada arco.
+     * @param valorDeArco      valor de la celda {@code [lugar][transicion]}.
+     * @param cantidadArcos    cantidad de arcos a tomar de los arreglos.
+     * @return la matriz comprimida.
+     * @throws IllegalArgumentException si un arco está fuera de rango o hay dos
+     *                                  arcos para la misma celda.
+     */
+    public static MatrizIncidenciaDispersa desdeArcos(int lugares, int transiciones, int[] lugarDeArco,
+            int[] transicionDeArco, int[] valorDeArco, int cantidadArcos) {
+        int[] inicioColumna = new int[transiciones + 1];
+        for (int i = 0; i < cantidadArcos; i++) {
+            if (lugarDeArco[i] < 0 || lugarDeArco[i] >= lugares || transicionDeArco[i] < 0
+                    || transicionDeArco[i] >= transiciones) {
+                throw new IllegalArgumentException("Arco fuera de rango: [" + lugarDeArco[i] + "]["
+                        + transicionDeArco[i] + "]");
+            }
+            if (valorDeArco[i] != 0)
+                inicioColumna[transicionDeArco[i] + 1]++;
+        }
+        for (int t = 0; t < transiciones; t++)
+            inicioColumna[t + 1] += inicioColumna[t];
+
+        int[] lugarOrdenado = new int[inicioColumna[transiciones]];
+        int[] valorOrdenado = new int[lugarOrdenado.length];
+        int[] siguiente = new int[transiciones];
+        for (int i = 0; i < cantidadArcos; i++) {
+            if (valorDeArco[i] == 0)
+                continue;
+            int t = transicionDeArco[i];
+            int destino = inicioColumna[t] + siguiente[t]++;
+            lugarOrdenado[destino] = lugarDeArco[i];
+            valorOrdenado[destino] = valorDeArco[i];
+        }
+
+        // Las columnas son cortas: se ordenan por insercion
+        for (int t = 0; t < transiciones; t++) {
+            for (int i = inicioColumna[t] + 1; i < inicioColumna[t + 1]; i++) {
+                int lugar = lugarOrdenado[i];
+                int valor = valorOrdenado[i];
+                int j = i - 1;
+                while (j >= inicioColumna[t] && lugarOrdenado[j] > lugar) {
+                    lugarOrdenado[j + 1] = lugarOrdenado[j];
+                    valorOrdenado[j + 1] = valorOrdenado[j];
+                    j--;
+                }
+                if (j >= inicioColumna[t] && lugarOrdenado[j] == lugar) {
+                    throw new IllegalArgumentException("Arco repetido: [" + lugar + "][" + t + "]");
+                }
+                lugarOrdenado[j + 1] = lugar;
+                valorOrdenado[j + 1] = valor;
+            }
+        }
+        return new MatrizIncidenciaDispersa(lugares, transiciones, inicioColumna, lugarOrdenado, valorOrdenado);
+    }
+
+    public int getCantidadLugares() {
+        return cantidadLugares;
+    }
+
+    public int getCantidadTransiciones() {
+        return cantidadTransiciones;
+    }
+
+    public int getCantidadArcos() {
+        return lugarDeArco.length;
+    }
+
+    // Acceso por columnas (transiciones). Los arreglos son internos y solo deben
+    // leerse.
+
+    public int inicioColumna(int t) {
+        return inicioColumna[t];
+    }
+
+    public int finColumna(int t) {
+        return inicioColumna[t + 1];
+    }
+
+    public int[] getLugaresDeArcos() {
+        return lugarDeArco;
+    }
+
+    public int[] getValoresPorColumna() {
+        return valorColumna;
+    }
+
+    // Acceso por filas (lugares). Los arreglos son internos y solo deben leerse.
+
+    public int inicioFila(int p) {
+        return inicioFila[p];
+    }
+
+    public int finFila(int p) {
+        return inicioFila[p + 1];
+    }
+
+    public int[] getTransicionesDeArcos() {
+        return transicionDeArco;
+    }
+
+    public int[] getValoresPorFila() {
+        return valorFila;
+    }
+
+    /**
+     * Devuelve el valor de la celda {@code [lugar][transicion]}, buscando en la
+     * columna de la transición. Costo O(log arcos de la transición).
+     */
+    public int get(int lugar, int transicion) {
+        int bajo = inicioColumna[transicion];
+        int alto = inicioColumna[transicion + 1] - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            int p = lugarDeArco[medio];
+            if (p < lugar)
+                bajo = medio + 1;
+            else if (p > lugar)
+                alto = medio - 1;
+            else
+                return valorColumna[medio];
+        }
+        return 0;
+    }
+
+    /**
+     * Verifica si dos transiciones comparten al menos un lugar de entrada,
+     * recorriendo en paralelo sus columnas ordenadas. Costo O(arcos de t1 + arcos
+     * de t2).
+     */
+    public boolean compartenLugaresDeEntrada(int t1, int t2) {
+        int i = inicioColumna[t1];
+        int j = inicioColumna[t2];
+        int finI = inicioColumna[t1 + 1];
+        int finJ = inicioColumna[t2 + 1];
+        while (i < finI && j < finJ) {
+            if (valorColumna[i] >= 0) {
+                i++;
+            } else if (valorColumna[j] >= 0) {
+                j++;
+            } else if (lugarDeArco[i] < lugarDeArco[j]) {
+                i++;
+            } else if (lugarDeArco[i] > lugarDeArco[j]) {
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Agrupa las transiciones en clusters de conflicto estructural: dos
+     * transiciones quedan en el mismo cluster si comparten un lugar de entrada,
+     * directamente o a través de otras transiciones del cluster. Cada lugar con
+     * consumidoras pertenece así a un único cluster, el único que le quita tokens.
+     *
+     * @return para cada transición, el número de su cluster (de 0 a cantidad de
+     *         clusters - 1, en orden de primera aparición).
+     */
+    public int[] calcularClustersDeConflicto() {
+        int[] padre = new int[cantidadTransiciones];
+        for (int t = 0; t < cantidadTransiciones; t++)
+            padre[t] = t;
+        for (int p = 0; p < cantidadLugares; p++) {
+            int primera = -1;
+            for (int i = inicioFila[p]; i < inicioFila[p + 1]; i++) {
+                if (valorFila[i] >= 0)
+                    continue;
+                if (primera < 0) {
+                    primera = transicionDeArco[i];
+                } else {
+                    padre[raiz(padre, transicionDeArco[i])] = raiz(padre, primera);
+                }
+            }
+        }
+        int[] cluster = new int[cantidadTransiciones];
+        int[] numeroDeRaiz = new int[cantidadTransiciones];
+        Arrays.fill(numeroDeRaiz, -1);
+        int cantidad = 0;
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            int r = raiz(padre, t);
+            if (numeroDeRaiz[r] < 0)
+                numeroDeRaiz[r] = cantidad++;
+            cluster[t] = numeroDeRaiz[r];
+        }
+        return cluster;
+    }
+
+    private static int raiz(int[] padre, int t) {
+        while (padre[t] != t) {
+            padre[t] = padre[padre[t]];
+            t = padre[t];
+        }
+        return t;
+    }
+
+    /**
+     * Reconstruye la matriz densa {@code [lugares][transiciones]}. Ocupa memoria
+     * proporcional a lugares × transiciones, por lo que solo debe usarse en redes
+     * chicas o para exportar.
+     */
+    public int[][] aDensa() {
+        int[][] densa = new int[cantidadLugares][cantidadTransiciones];
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            for (int i = inicioColumna[t]; i < inicioColumna[t + 1]; i++)
+                densa[lugarDeArco[i]][t] = valorColumna[i];
+        }
+        return densa;
+    }
+}
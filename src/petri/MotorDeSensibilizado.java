@@ -0,0 +1,129 @@
+package petri;
+
+/**
+ * Motor que mantiene de forma incremental el conjunto de transiciones
+ * sensibilizadas de una red de Petri. Trabaja sobre la
+ * {@link MatrizIncidenciaDispersa}: los arcos de cada columna son los lugares
+ * que modifica la transición (los de valor negativo son sus entradas) y los
+ * arcos de cada fila son las transiciones que tocan el lugar.
+ *
+ * Para cada transición se cuenta cuántos de sus lugares de entrada no tienen
+ * los tokens que pide; está sensibilizada cuando la cuenta es cero. Al disparar
+ * una transición, cada lugar modificado solo ajusta la cuenta de las
+ * transiciones que consumen de él y cuyo arco pasó de cumplirse a no cumplirse
+ * (o al revés), sin volver a recorrer sus columnas. El costo de un disparo es
+ * proporcional a los arcos involucrados y no al tamaño de la red.
+ */
+public class MotorDeSensibilizado {
+
+    private final int[] marcado; // Marcado compartido con la red (se modifica in situ)
+    private final MatrizIncidenciaDispersa matriz;
+
+    private final int[] lugarDeArco; // CSC: lugar de cada arco
+    private final int[] valorColumna; // CSC: valor de cada arco
+
+    // Arcos de entrada agrupados por lugar: los del lugar p en
+    // [inicioConsumo[p], inicioConsumo[p + 1])
+    private final int[] inicioConsumo;
+    private final int[] consumidora; // transicion que consume
+    private final int[] pedido; // tokens que pide (valor del arco, en positivo)
+
+    private final int[] faltantes; // por transicion: lugares de entrada sin los tokens que pide
+    private final long[] sensibilizadas; // bitset de transiciones sensibilizadas
+    private int cantidadSensibilizadas;
+
+    public MotorDeSensibilizado(MatrizIncidenciaDispersa matriz, int[] marcado) {
+        if (marcado.length != matriz.getCantidadLugares()) {
+            throw new IllegalArgumentException("El marcado no coincide con la cantidad de lugares de la red.");
+        }
+        this.matriz = matriz;
+        this.marcado = marcado;
+        this.lugarDeArco = matriz.getLugaresDeArcos();
+        this.valorColumna = matriz.getValoresPorColumna();
+        int[] transicionDeArco = matriz.getTransicionesDeArcos();
+        int[] valorFila = matriz.getValoresPorFila();
+
+        int cantidadLugares = matriz.getCantidadLugares();
+        int cantidadTransiciones = matriz.getCantidadTransiciones();
+        inicioConsumo = new int[cantidadLugares + 1];
+        for (int p = 0; p < cantidadLugares; p++) {
+            int entradas = 0;
+            for (int j = matriz.inicioFila(p); j < matriz.finFila(p); j++)
+                if (valorFila[j] < 0)
+                    entradas++;
+            inicioConsumo[p + 1] = inicioConsumo[p] + entradas;
+        }
+        consumidora = new int[inicioConsumo[cantidadLugares]];
+        pedido = new int[consumidora.length];
+        faltantes = new int[cantidadTransiciones];
+        for (int p = 0, k = 0; p < cantidadLugares; p++) {
+            for (int j = matriz.inicioFila(p); j < matriz.finFila(p); j++) {
+                if (valorFila[j] < 0) {
+                    consumidora[k] = transicionDeArco[j];
+                    pedido[k] = -valorFila[j];
+                    if (marcado[p] < pedido[k])
+                        faltantes[consumidora[k]]++;
+                    k++;
+                }
+            }
+        }
+
+        sensibilizadas = new long[(cantidadTransiciones + 63) >>> 6];
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            if (faltantes[t] == 0) {
+                sensibilizadas[t >>> 6] |= 1L << t;
+                cantidadSensibilizadas++;
+            }
+        }
+    }
+
+    /**
+     * Indica si la transición está sensibilizada por tokens en el marcado actual.
+     * Costo O(1).
+     */
+    public boolean sensibilizado(int t) {
+        return (sensibilizadas[t >>> 6] & (1L << t)) != 0;
+    }
+
+    /** Indica si no queda ninguna transición sensibilizada. */
+    public boolean ningunaSensibilizada() {
+        return cantidadSensibilizadas == 0;
+    }
+
+    /**
+     * Devuelve las palabras del bitset de sensibilizadas. El arreglo es interno y
+     * no debe modificarse.
+     */
+    public long[] getPalabrasSensibilizadas() {
+        return sensibilizadas;
+    }
+
+    /**
+     * Aplica el disparo de la transición sobre el marcado y actualiza las
+     * transiciones que consumen de los lugares modificados. No comprueba que la
+     * transición esté sensibilizada.
+     */
+    public void disparar(int t) {
+        for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+            int p = lugarDeArco[i];
+            int antes = marcado[p];
+            int despues = antes + valorColumna[i];
+            marcado[p] = despues;
+            for (int k = inicioConsumo[p]; k < inicioConsumo[p + 1]; k++) {
+                boolean alcanzaba = antes >= pedido[k];
+                if (alcanzaba != despues >= pedido[k]) {
+                    int afectada = consumidora[k];
+                    if (alcanzaba) {
+                        if (faltantes[afectada]++ == 0) {
+                            sensibilizadas[afectada >>> 6] &= ~(1L << afectada);
+                            cantidadSensibilizadas--;
+                        }
+                    } else if (--faltantes[afectada] == 0) {
+                        sensibilizadas[afectada >>> 6] |= 1L << afectada;
+                        cantidadSensibilizadas++;
+                    }
+                }
+            }
+        }
+    }
+}
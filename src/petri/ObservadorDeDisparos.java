@@ -0,0 +1,17 @@
+package petri;
+
+/**
+ * Recibe cada disparo de una {@link RedDePetri}, en orden. Se llama desde
+ * {@link RedDePetri#dispararTransicion(int)} en el hilo que dispara, con su
+ * lock tomado y después de actualizar el marcado, así que debe ser breve y no
+ * bloquear.
+ */
+@FunctionalInterface
+public interface ObservadorDeDisparos {
+
+    /**
+     * @param transicion    transición disparada.
+     * @param instanteNanos instante del disparo ({@link System#nanoTime()}).
+     */
+    void disparada(int transicion, long instanteNanos);
+}
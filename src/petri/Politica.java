@@ -35,4 +35,25 @@ public interface Politica {
    *         política.
    */
   int llamadaApolitica(List<Integer> conflicto);
-}
+
+  /**
+   * Recibe la matriz de conflictos de la red a la que se asocia la política,
+   * por si la política necesita conocer qué transiciones compiten entre sí. Por
+   * defecto no hace nada.
+   *
+   * @param conflictos matriz de conflictos precalculada por la red.
+   */
+  default void setConflictos(MatrizDeConflictos conflictos) {
+  }
+
+  /**
+   * Recibe la red a la que se asocia la política, por si la política necesita
+   * consultar su estado, por ejemplo los disparos de cada transición
+   * ({@link RedDePetri#getDisparos(int)}). La llama quien arma la red, una vez
+   * construida y antes de que empiece a disparar. Por defecto no hace nada.
+   *
+   * @param redDePetri red que consulta a la política.
+   */
+  default void setRed(RedDePetri redDePetri) {
+  }
+}
\ No newline at end of file
@@ -1,23 +1,90 @@
 package petri;
 
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Clase que implementa la interfaz {@link Politica} para manejar la selección
  * de transiciones en un
  * modelo de red de Petri, con dos políticas posibles: balanceada y priorizada.
+ *
+ * La balanceada elige, de las dos transiciones en conflicto, la que menos se
+ * disparó, leyendo los contadores de la red ({@link RedDePetri#getDisparos(int)})
+ * en O(1). Si la diferencia no supera la tolerancia se considera empate, y los
+ * empates se reparten alternando entre las dos.
  */
 public class PoliticaAgenciaVuelo implements Politica {
 
   private int numeroPolitica; // Política elegida
+  private int toleranciaBalanceo; // diferencia de disparos que todavia es empate
+  private RedDePetri redDePetri; // de donde se leen los disparos de cada transicion
+  private final Empate agentes = new Empate(); // conflicto T2 / T3
+  private final Empate cierre = new Empate(); // conflicto T6 / T7 (confirmar o cancelar)
+
+  /**
+   * Estado de desempate de un par en conflicto: la transición elegida en el
+   * último empate. Con el monitor por clusters cada par lo decide solo el
+   * cluster que lo contiene, bajo su mutex; se actualiza con CAS para que
+   * también alterne bien con {@code MonitorSinBloqueo}, que consulta la
+   * política sin lock.
+   */
+  private static final class Empate {
+    private final AtomicInteger ultima = new AtomicInteger(-1);
+
+    int alternar(int i, int j) {
+      while (true) {
+        int anterior = ultima.get();
+        int elegida = anterior == i ? j : i;
+        if (ultima.compareAndSet(anterior, elegida))
+          return elegida;
+      }
+    }
+  }
 
   public PoliticaAgenciaVuelo(int numeroPolitica) throws PoliticaInexistenteException {
+    this(numeroPolitica, 0);
+  }
+
+  /**
+   * @param numeroPolitica     1 (balanceada) o 2 (priorizada).
+   * @param toleranciaBalanceo diferencia de disparos entre las transiciones en
+   *                           conflicto que la política balanceada todavía trata
+   *                           como empate.
+   * @throws PoliticaInexistenteException si la política no existe.
+   */
+  public PoliticaAgenciaVuelo(int numeroPolitica, int toleranciaBalanceo) throws PoliticaInexistenteException {
     setPolitica(numeroPolitica);
+    setToleranciaBalanceo(toleranciaBalanceo);
+  }
+
+  /**
+   * @param toleranciaBalanceo diferencia de disparos que se considera empate.
+   * @throws IllegalArgumentException si es negativa.
+   */
+  public void setToleranciaBalanceo(int toleranciaBalanceo) {
+    if (toleranciaBalanceo < 0) {
+      throw new IllegalArgumentException("La tolerancia no puede ser negativa.");
+    }
+    this.toleranciaBalanceo = toleranciaBalanceo;
+  }
+
+  public int getToleranciaBalanceo() {
+    return toleranciaBalanceo;
+  }
+
+  @Override
+  public void setRed(RedDePetri redDePetri) {
+    this.redDePetri = redDePetri;
+  }
+
+  /** Indica si el número corresponde a una política: 1 (balanceada) o 2 (priorizada). */
+  public static boolean existe(int numeroPolitica) {
+    return numeroPolitica == 1 || numeroPolitica == 2;
   }
 
   @Override
   public void setPolitica(int numeroPolitica) throws PoliticaInexistenteException {
-    if (numeroPolitica < 1 || numeroPolitica > 2) {
+    if (!existe(numeroPolitica)) {
       throw new PoliticaInexistenteException();
     }
     this.numeroPolitica = numeroPolitica;
@@ -28,8 +95,8 @@ public class PoliticaAgenciaVuelo implements Politica {
     switch (numeroPolitica) {
       case 1:
         if (candidatos.contains(2) && candidatos.contains(3))
-          return politicaBalanceada(2, 3);
-        return politicaBalanceada(6, 7);
+          return politicaBalanceada(agentes, 2, 3);
+        return politicaBalanceada(cierre, 6, 7);
 
       case 2:
         if (candidatos.contains(2) && candidatos.contains(3))
@@ -60,11 +127,22 @@ public class PoliticaAgenciaVuelo implements Politica {
   /**
    * Aplica la política balanceada para decidir entre dos transiciones.
    *
-   * @param i la primera transición.
-   * @param j la segunda transición.
+   * @param empate desempate del par que se decide.
+   * @param i      la primera transición.
+   * @param j      la segunda transición.
    * @return la transición seleccionada con menor cantidad de disparos acumulados.
    */
-  private int politicaBalanceada(int i, int j) {
-    return Math.random() <= 0.5 ? i : j;
+  private int politicaBalanceada(Empate empate, int i, int j) {
+    if (redDePetri == null) {
+      return Math.random() <= 0.5 ? i : j; // sin red no hay contadores
+    }
+    long diferencia = redDePetri.getDisparos(i) - redDePetri.getDisparos(j);
+    if (diferencia < -toleranciaBalanceo) {
+      return i;
+    }
+    if (diferencia > toleranciaBalanceo) {
+      return j;
+    }
+    return empate.alternar(i, j);
   }
 }
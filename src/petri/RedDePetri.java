@@ -1,31 +1,85 @@
 package petri;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import pantalla.PantallaCarga;
 
+/**
+ * Red de Petri con su marcado, su política y sus ventanas de tiempo. Los
+ * disparos los serializa quien la usa (el monitor, con sus locks).
+ *
+ * Para que otros hilos (el log, un tablero) puedan observar el estado mientras
+ * se dispara, cada disparo se escribe dentro de un seqlock: la versión es impar
+ * mientras el disparo modifica el marcado y par fuera de él.
+ * {@link #getInstantanea(InstantaneaDeMarcado)} copia el estado y reintenta si
+ * la versión cambió en el medio, así que el lector obtiene una copia
+ * consistente sin tomar locks y el disparo nunca espera a los lectores.
+ *
+ * Los {@link ObservadorDeDisparos} suscriptos reciben cada disparo en orden,
+ * por ejemplo para validar la secuencia en línea ({@link VerificadorEnLinea}).
+ */
 public class RedDePetri {
+    private static final VarHandle CONTADOR = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle VERSION;
 
-    private int[] marcado; // Marcado de la red de Petri
-    private String secuencia = ""; // Secuencia de transiciones disparadas
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(RedDePetri.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int[] marcado; // Marcado de la red de Petri
+    private final DiarioDeTransiciones secuencia; // Secuencia de transiciones disparadas
     private ArrayList<AlfaYBeta> alfaybetas;
-    private int[][] matrizIncidencia;
+    private final MatrizIncidenciaDispersa matrizIncidencia; // Matriz comprimida (CSR/CSC)
     // simula la transicion 11, llevando registro, pero sin cambiar de estado (Se
     // pueden borrar si se cambia de red)
     private int maxClient; // Cantidad de clientes por atender
-    private boolean termino = false; // comprobar si todos los clientes terminaron
+    private volatile boolean termino = false; // comprobar si todos los clientes terminaron
     private Politica politica;
     private int clientesSalientes = 0;
+    private final MotorDeSensibilizado motor; // Conjunto incremental de transiciones sensibilizadas
+    private final MatrizDeConflictos conflictos; // Conflicto estructural entre transiciones (precalculado)
+    private final long[] disparos; // disparos de cada transicion; se escriben bajo el lock del que dispara
+    @SuppressWarnings("unused") // se accede con VERSION
+    private long version; // seqlock: impar mientras se dispara
+    private long totalDisparos; // protegido por el seqlock
+    private long instanteUltimoDisparo; // System.nanoTime(), protegido por el seqlock
+    private volatile ObservadorDeDisparos[] observadores = new ObservadorDeDisparos[0]; // copia al escribir
+    private InvariantesDeRed invariantes; // para comprobar los P-invariantes con assert, puede ser null
 
     public RedDePetri(int[][] matrizIncidencia, int[] marcado, Politica politica, ArrayList<AlfaYBeta> alfaYbetas) {
+        this(MatrizIncidenciaDispersa.desdeDensa(matrizIncidencia), marcado, politica, alfaYbetas);
+    }
 
+    public RedDePetri(MatrizIncidenciaDispersa matrizIncidencia, int[] marcado, Politica politica,
+            ArrayList<AlfaYBeta> alfaYbetas) {
+        this(matrizIncidencia, marcado, politica, alfaYbetas,
+                new DiarioDeTransiciones(matrizIncidencia.getCantidadTransiciones() > DiarioDeTransiciones.MAXIMO_ANGOSTO));
+    }
+
+    public RedDePetri(MatrizIncidenciaDispersa matrizIncidencia, int[] marcado, Politica politica,
+            ArrayList<AlfaYBeta> alfaYbetas, DiarioDeTransiciones secuencia) {
+        if (matrizIncidencia.getCantidadTransiciones() > secuencia.getMaximoTransiciones()) {
+            throw new IllegalArgumentException("El diario de transiciones admite hasta "
+                    + secuencia.getMaximoTransiciones() + " transiciones; use un diario ancho.");
+        }
         this.politica = politica;
+        this.secuencia = secuencia;
         this.matrizIncidencia = matrizIncidencia;
         this.marcado = marcado;
         maxClient = this.marcado[0];
         this.alfaybetas = alfaYbetas;
-
+        this.motor = new MotorDeSensibilizado(matrizIncidencia, this.marcado);
+        this.conflictos = new MatrizDeConflictos(matrizIncidencia);
+        politica.setConflictos(conflictos);
+        this.disparos = new long[matrizIncidencia.getCantidadTransiciones()];
     }
 
     public int getClientesSalientes() {
@@ -48,58 +102,84 @@ public class RedDePetri {
         return termino;
     }
 
+    /**
+     * Reconstruye la matriz de incidencia densa. Ocupa lugares × transiciones, por
+     * lo que en redes grandes conviene usar {@link #getMatrizDispersa()}.
+     */
     public int[][] getMatrizIncidencia() {
-        return matrizIncidencia;
+        return matrizIncidencia.aDensa();
     }
 
-    // Comprueba si no hay valores negativos en el nuevo estado
-    public boolean sensibilizado(int t) {
-        int[] nuevo = nuevoMarcado(t);
-        for (int x : nuevo)
-            if (x < 0)
-                return false;
-        return true;
+    public MatrizIncidenciaDispersa getMatrizDispersa() {
+        return matrizIncidencia;
     }
 
-    private int[] nuevoMarcado(int t) {
-        int[] S = new int[matrizIncidencia[0].length];
-        S[t] = 1;
-
-        int[] result = new int[matrizIncidencia.length];
-
-        for (int i = 0; i < matrizIncidencia.length; i++) {
-            int suma = 0;
-            for (int j = 0; j < matrizIncidencia[0].length; j++) {
-                suma += matrizIncidencia[i][j] * S[j];
-            }
-            result[i] = marcado[i] + suma;
-        }
-
-        return result;
+    // Consulta el bitset de sensibilizadas mantenido por el motor, O(1)
+    public boolean sensibilizado(int t) {
+        return motor.sensibilizado(t);
     }
 
     // Vector de sensibilizado estructural (0 = no sensibilizada, 1 = sensibilizada)
     public int[] getSensibilizadas() {
-        int[] sensibilizadas = new int[matrizIncidencia[0].length];
+        int[] sensibilizadas = new int[getCantidadDeTransiciones()];
 
-        for (int t = 0; t < matrizIncidencia[0].length; t++)
+        for (int t = 0; t < sensibilizadas.length; t++)
             sensibilizadas[t] = sensibilizado(t) ? 1 : 0;
 
         return sensibilizadas;
     }
 
+    /**
+     * Devuelve el bitset de transiciones sensibilizadas (bit t de la palabra t/64).
+     * El arreglo es interno y solo debe leerse.
+     */
+    public long[] getPalabrasSensibilizadas() {
+        return motor.getPalabrasSensibilizadas();
+    }
+
     public int getCantidadDeTransiciones() {
-        return matrizIncidencia[0].length;
+        return matrizIncidencia.getCantidadTransiciones();
     }
 
     public void dispararTransicion(int t) {
+        dispararTransicion(t, System.nanoTime());
+    }
+
+    /**
+     * Dispara la transición con un instante dado en lugar del actual, por
+     * ejemplo para reproducir una traza con sus instantes originales.
+     *
+     * @param t        transición a disparar.
+     * @param instante instante del disparo ({@link System#nanoTime()}).
+     */
+    public void dispararTransicion(int t, long instante) {
+        // Un unico escritor por vez (el que dispara tiene el lock): la version
+        // impar avisa a los lectores que el estado esta cambiando
+        long v = (long) VERSION.getOpaque(this);
+        VERSION.setOpaque(this, v + 1);
+        VarHandle.storeStoreFence();
         if (t == 11) { // Simulación T11 especial
             clientesSalientes++;
-            PantallaCarga.incrementarPorcentaje(maxClient);
         }
         // Transiciones normales
-        secuencia += "T" + t; // registrar la transición
-        marcado = nuevoMarcado(t);
+        secuencia.agregar(t); // registrar la transición
+        // La escritura opaca deja que otros hilos lean sin lock un valor entero
+        CONTADOR.setOpaque(disparos, t, disparos[t] + 1);
+        motor.disparar(t); // actualiza el marcado in situ y las sensibilizadas afectadas
+        totalDisparos++;
+        instanteUltimoDisparo = instante;
+        // Solo con -ea: el disparo tiene que conservar los P-invariantes
+        assert invariantes == null || invariantes.cumpleInvariantesP(marcado) : "T" + t
+                + " no conserva el P-invariante "
+                + invariantes.describirInvarianteP(invariantes.primerInvariantePIncumplido(marcado));
+        VERSION.setRelease(this, v + 2);
+
+        for (ObservadorDeDisparos observador : observadores) {
+            observador.disparada(t, instante);
+        }
+        if (t == 11) {
+            PantallaCarga.incrementarPorcentaje(maxClient);
+        }
         // Comprobar si terminamos
         if (comprobarTermino()) {
             termino = true;
@@ -107,48 +187,142 @@ public class RedDePetri {
         }
     }
 
+    /**
+     * Vista de compatibilidad de la secuencia como {@code "T0T1..."}. Se arma en
+     * cada llamada; para recorridos largos conviene {@link #getDiario()}.
+     */
     public String getSecuencia() {
+        return secuencia.aCadena();
+    }
+
+    public DiarioDeTransiciones getDiario() {
         return secuencia;
     }
 
-    private boolean comprobarTermino() {
-        for (int t = 0; t < matrizIncidencia[0].length; t++) {
-            if (sensibilizado(t))
-                return false;
+    /**
+     * Suscribe un observador a los disparos. Conviene hacerlo antes de empezar a
+     * disparar para que reciba la secuencia completa.
+     */
+    public synchronized void agregarObservador(ObservadorDeDisparos observador) {
+        ObservadorDeDisparos[] nuevos = Arrays.copyOf(observadores, observadores.length + 1);
+        nuevos[observadores.length] = observador;
+        observadores = nuevos;
+    }
+
+    /**
+     * Asocia a la red sus invariantes estructurales. Con las aserciones
+     * habilitadas ({@code -ea}), cada disparo comprueba que el marcado siga
+     * conservando los P-invariantes. Debe llamarse antes de empezar a disparar.
+     *
+     * @param invariantes invariantes calculados desde esta misma red y su
+     *                    marcado inicial.
+     */
+    public void setInvariantes(InvariantesDeRed invariantes) {
+        this.invariantes = invariantes;
+    }
+
+    /** Devuelve los invariantes asociados con {@link #setInvariantes}, o {@code null}. */
+    public InvariantesDeRed getInvariantes() {
+        return invariantes;
+    }
+
+    /**
+     * Copia el marcado, los disparos, los clientes salientes y el instante del
+     * último disparo en una instantánea consistente, sin tomar locks ni crear
+     * objetos. Si un disparo ocurre durante la copia, se vuelve a copiar.
+     *
+     * @param destino instantánea a llenar, con lugar para todos los lugares.
+     * @return {@code destino}.
+     */
+    public InstantaneaDeMarcado getInstantanea(InstantaneaDeMarcado destino) {
+        if (destino.marcado.length != marcado.length) {
+            throw new IllegalArgumentException("La instantanea debe tener " + marcado.length + " lugares.");
+        }
+        while (true) {
+            long v = (long) VERSION.getAcquire(this);
+            if ((v & 1) != 0) {
+                Thread.onSpinWait(); // hay un disparo en curso
+                continue;
+            }
+            System.arraycopy(marcado, 0, destino.marcado, 0, marcado.length);
+            destino.disparos = totalDisparos;
+            destino.clientesSalientes = clientesSalientes;
+            destino.instanteNanos = instanteUltimoDisparo;
+            // Las lecturas de arriba no pueden moverse despues de releer la version
+            VarHandle.loadLoadFence();
+            if ((long) VERSION.getOpaque(this) == v) {
+                destino.version = v >>> 1;
+                return destino;
+            }
         }
-        return true;
+    }
+
+    /** Igual que {@link #getInstantanea(InstantaneaDeMarcado)}, con una instantánea nueva. */
+    public InstantaneaDeMarcado getInstantanea() {
+        return getInstantanea(new InstantaneaDeMarcado(marcado.length));
+    }
+
+    /**
+     * Devuelve cuántas veces se disparó la transición. Se puede llamar sin tener
+     * el lock de la red, mientras otros hilos disparan.
+     */
+    public long getDisparos(int t) {
+        return (long) CONTADOR.getOpaque(disparos, t);
+    }
+
+    /**
+     * Devuelve una copia de los contadores de disparos de todas las
+     * transiciones, en O(transiciones). Se puede llamar sin tener el lock de la
+     * red; si hay disparos en curso, cada contador es el de algún instante
+     * reciente, pero no necesariamente todos del mismo.
+     */
+    public long[] getDisparos() {
+        long[] copia = new long[disparos.length];
+        for (int t = 0; t < copia.length; t++)
+            copia[t] = (long) CONTADOR.getOpaque(disparos, t);
+        return copia;
+    }
+
+    private boolean comprobarTermino() {
+        return motor.ningunaSensibilizada();
     }
 
     public int consultarPolitica(List<Integer> candidatos) {
         // si no hay conflicto o no hay hilos candidatos, se manda -1 para que compitan
         // por el mutex
-        if (!compartenLugaresDeEntrada(candidatos)) {
+        if (!conflictos.hayConflicto(candidatos)) {
             return -1; // No hay candidatos activos
         }
 
         return politica.llamadaApolitica(candidatos);
     }
 
-    private boolean compartenLugaresDeEntrada(List<Integer> candidatos) {
-        for (int i = 0; i < candidatos.size(); i++) {
-            for (int j = i + 1; j < candidatos.size(); j++) {
-                if (compartenLugares(candidatos.get(i), candidatos.get(j))) {
-                    return true;
-                }
+    /**
+     * Igual que {@link #consultarPolitica(List)} pero con los candidatos como
+     * bitset. Solo arma la lista para la política cuando hay conflicto.
+     */
+    public int consultarPolitica(long[] candidatos) {
+        if (!conflictos.hayConflicto(candidatos)) {
+            return -1;
+        }
+
+        List<Integer> lista = new ArrayList<>();
+        for (int w = 0; w < candidatos.length; w++) {
+            long palabra = candidatos[w];
+            while (palabra != 0) {
+                lista.add((w << 6) + Long.numberOfTrailingZeros(palabra));
+                palabra &= palabra - 1;
             }
         }
-        return false;
+        return politica.llamadaApolitica(lista);
     }
 
     /**
-     * Verifica si dos transiciones comparten al menos un lugar de entrada.
+     * Devuelve la matriz de conflictos entre transiciones, calculada una sola vez
+     * al construir la red.
      */
-    private boolean compartenLugares(int t1, int t2) {
-        for (int i = 0; i < matrizIncidencia.length; i++) {
-            if (matrizIncidencia[i][t1] < 0 && matrizIncidencia[i][t2] < 0)
-                return true;
-        }
-        return false;
+    public MatrizDeConflictos getConflictos() {
+        return conflictos;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,15 @@
+package petri;
+
+/**
+ * Fuente de tiempo de las ventanas alfa y beta, en nanosegundos. Por defecto
+ * se usa el reloj del sistema; una simulación puede inyectar un reloj virtual.
+ */
+@FunctionalInterface
+public interface Reloj {
+
+    /** Reloj del sistema ({@link System#nanoTime()}). */
+    Reloj SISTEMA = System::nanoTime;
+
+    /** Devuelve el instante actual, en nanosegundos. */
+    long nanoTime();
+}
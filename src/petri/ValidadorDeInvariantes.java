@@ -0,0 +1,256 @@
+package petri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Valida, en una sola pasada y con memoria acotada, que una secuencia de
+ * disparos se descomponga en instancias completas de un conjunto de
+ * T-invariantes, contando cuántas hay de cada uno.
+ *
+ * Los invariantes (cada uno como la secuencia ordenada de sus transiciones) se
+ * guardan en un árbol de prefijos. Cada instancia en curso es un cliente que
+ * entró por la primera transición y espera en un nodo del árbol a su próxima
+ * transición. Cada disparo se asigna a la instancia más antigua que lo está
+ * esperando; si ninguna lo espera y es el comienzo de un invariante, abre una
+ * instancia nueva. Es el mismo criterio del script {@code PetriFlightAnalyzer.py}
+ * (que va quitando de la secuencia la primera instancia de la izquierda), pero
+ * sin expresiones regulares ni reescribir la secuencia. La memoria depende de
+ * la cantidad de instancias en curso a la vez, no del largo de la secuencia.
+ */
+public class ValidadorDeInvariantes {
+
+    /** Resultado de {@link #procesar(int)}: el disparo avanzó una instancia que sigue en curso. */
+    public static final int EN_CURSO = -1;
+    /** Resultado de {@link #procesar(int)}: ninguna instancia esperaba el disparo. */
+    public static final int SOBRANTE = -2;
+
+    private static final int RAIZ = 0;
+
+    private final int[][] invariantes;
+    private final int[][] nodosQueAceptan; // por transicion: nodos con un hijo por ella
+    private final int[][] destinos; // por transicion: el hijo de cada uno de esos nodos
+    private final int[] invarianteQueTermina; // por nodo: invariante que completa, o -1
+    private final MonticuloDeOrdenes[] esperando; // por nodo: instancias en curso, por antiguedad
+    private final long[] cantidades; // instancias completas de cada invariante
+    private long proximaInstancia; // orden de llegada de la proxima instancia
+    private long enCurso;
+    private long sobrantes; // disparos que no se pudieron asignar
+    private long disparos;
+
+    /**
+     * @param cantidadTransiciones cantidad de transiciones de la red.
+     * @param invariantes          cada invariante como la secuencia ordenada de
+     *                             sus transiciones.
+     * @throws IllegalArgumentException si un invariante está vacío, es prefijo de
+     *                                  otro o usa una transición fuera de rango.
+     */
+    public ValidadorDeInvariantes(int cantidadTransiciones, int[][] invariantes) {
+        this.invariantes = invariantes;
+        this.cantidades = new long[invariantes.length];
+
+        // Arbol de prefijos: hijos de cada nodo por transicion
+        List<Map<Integer, Integer>> hijos = new ArrayList<>();
+        hijos.add(new HashMap<>());
+        List<Integer> terminales = new ArrayList<>();
+        terminales.add(-1);
+        for (int i = 0; i < invariantes.length; i++) {
+            if (invariantes[i].length == 0) {
+                throw new IllegalArgumentException("El invariante " + i + " esta vacio.");
+            }
+            int nodo = RAIZ;
+            for (int t : invariantes[i]) {
+                if (t < 0 || t >= cantidadTransiciones) {
+                    throw new IllegalArgumentException("Transicion fuera de rango en el invariante " + i + ": " + t);
+                }
+                if (terminales.get(nodo) >= 0) {
+                    throw new IllegalArgumentException("El invariante " + terminales.get(nodo)
+                            + " es prefijo de otro.");
+                }
+                Integer siguiente = hijos.get(nodo).get(t);
+                if (siguiente == null) {
+                    siguiente = hijos.size();
+                    hijos.get(nodo).put(t, siguiente);
+                    hijos.add(new HashMap<>());
+                    terminales.add(-1);
+                }
+                nodo = siguiente;
+            }
+            if (terminales.get(nodo) >= 0 || !hijos.get(nodo).isEmpty()) {
+                throw new IllegalArgumentException("El invariante " + i + " es prefijo de otro o esta repetido.");
+            }
+            terminales.set(nodo, i);
+        }
+
+        int nodos = hijos.size();
+        invarianteQueTermina = new int[nodos];
+        esperando = new MonticuloDeOrdenes[nodos];
+        for (int n = 0; n < nodos; n++) {
+            invarianteQueTermina[n] = terminales.get(n);
+            esperando[n] = new MonticuloDeOrdenes();
+        }
+        int[] cuenta = new int[cantidadTransiciones];
+        for (Map<Integer, Integer> h : hijos)
+            for (int t : h.keySet())
+                cuenta[t]++;
+        nodosQueAceptan = new int[cantidadTransiciones][];
+        destinos = new int[cantidadTransiciones][];
+        for (int t = 0; t < cantidadTransiciones; t++) {
+            nodosQueAceptan[t] = new int[cuenta[t]];
+            destinos[t] = new int[cuenta[t]];
+            cuenta[t] = 0;
+        }
+        for (int n = 0; n < nodos; n++) {
+            for (Map.Entry<Integer, Integer> h : hijos.get(n).entrySet()) {
+                int t = h.getKey();
+                nodosQueAceptan[t][cuenta[t]] = n;
+                destinos[t][cuenta[t]++] = h.getValue();
+            }
+        }
+    }
+
+    /**
+     * Procesa el siguiente disparo de la secuencia.
+     *
+     * @return el número del invariante que el disparo completó, {@link #EN_CURSO}
+     *         si la instancia que avanzó sigue incompleta, o {@link #SOBRANTE} si
+     *         ninguna instancia lo esperaba y no comienza un invariante.
+     */
+    public int procesar(int t) {
+        disparos++;
+        int mejor = -1;
+        long masAntigua = Long.MAX_VALUE;
+        int raiz = -1;
+        for (int k = 0; k < nodosQueAceptan[t].length; k++) {
+            int nodo = nodosQueAceptan[t][k];
+            if (nodo == RAIZ) {
+                raiz = k;
+            } else if (!esperando[nodo].estaVacio() && esperando[nodo].minimo() < masAntigua) {
+                masAntigua = esperando[nodo].minimo();
+                mejor = k;
+            }
+        }
+        if (mejor >= 0) {
+            esperando[nodosQueAceptan[t][mejor]].quitarMinimo();
+            return avanzar(masAntigua, destinos[t][mejor]);
+        }
+        if (raiz >= 0) {
+            enCurso++;
+            return avanzar(proximaInstancia++, destinos[t][raiz]);
+        }
+        sobrantes++;
+        return SOBRANTE;
+    }
+
+    /** Procesa todos los disparos de un diario. */
+    public void procesar(DiarioDeTransiciones diario) {
+        DiarioDeTransiciones.Cursor cursor = diario.cursor();
+        while (cursor.haySiguiente())
+            procesar(cursor.siguiente());
+    }
+
+    private int avanzar(long instancia, int nodo) {
+        int invariante = invarianteQueTermina[nodo];
+        if (invariante >= 0) {
+            cantidades[invariante]++;
+            enCurso--;
+            return invariante;
+        }
+        esperando[nodo].agregar(instancia);
+        return EN_CURSO;
+    }
+
+    /**
+     * Indica si, hasta ahora, la secuencia se descompone exactamente en
+     * invariantes completos: no sobró ningún disparo ni quedan instancias a
+     * medio completar.
+     */
+    public boolean esValida() {
+        return sobrantes == 0 && enCurso == 0;
+    }
+
+    /** Instancias completas del invariante. */
+    public long getCantidad(int invariante) {
+        return cantidades[invariante];
+    }
+
+    /** Instancias completas de todos los invariantes. */
+    public long getTotal() {
+        long total = 0;
+        for (long c : cantidades)
+            total += c;
+        return total;
+    }
+
+    /** Instancias que comenzaron y todavía no se completaron. */
+    public long getEnCurso() {
+        return enCurso;
+    }
+
+    /** Disparos que no correspondían a ninguna instancia. */
+    public long getSobrantes() {
+        return sobrantes;
+    }
+
+    public long getDisparos() {
+        return disparos;
+    }
+
+    /** Devuelve el invariante como texto, por ejemplo {@code "T0T1T2"}. */
+    public String getNombre(int invariante) {
+        StringBuilder sb = new StringBuilder();
+        for (int t : invariantes[invariante])
+            sb.append('T').append(t);
+        return sb.toString();
+    }
+
+    public int getCantidadInvariantes() {
+        return invariantes.length;
+    }
+
+    /** Montículo de mínimos de órdenes de instancia, sin cajas. */
+    private static final class MonticuloDeOrdenes {
+        private long[] datos = new long[8];
+        private int tamanio;
+
+        boolean estaVacio() {
+            return tamanio == 0;
+        }
+
+        long minimo() {
+            return datos[0];
+        }
+
+        void agregar(long valor) {
+            if (tamanio == datos.length)
+                datos = Arrays.copyOf(datos, tamanio * 2);
+            int i = tamanio++;
+            while (i > 0 && datos[(i - 1) >>> 1] > valor) {
+                datos[i] = datos[(i - 1) >>> 1];
+                i = (i - 1) >>> 1;
+            }
+            datos[i] = valor;
+        }
+
+        void quitarMinimo() {
+            long ultimo = datos[--tamanio];
+            int i = 0;
+            while (true) {
+                int hijo = 2 * i + 1;
+                if (hijo >= tamanio)
+                    break;
+                if (hijo + 1 < tamanio && datos[hijo + 1] < datos[hijo])
+                    hijo++;
+                if (datos[hijo] >= ultimo)
+                    break;
+                datos[i] = datos[hijo];
+                i = hijo;
+            }
+            if (tamanio > 0)
+                datos[i] = ultimo;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package petri;
+
+/**
+ * Valida los T-invariantes mientras la red dispara. Se suscribe a la red como
+ * {@link ObservadorDeDisparos} y pasa cada disparo a un
+ * {@link ValidadorDeInvariantes}, que solo guarda las instancias en curso: la
+ * memoria no crece con la cantidad de clientes, así que la red puede usar un
+ * diario que no retiene la secuencia ({@link DiarioDeTransiciones#sinRetener()}).
+ *
+ * Los resultados se pueden consultar en cualquier momento desde otros hilos, y
+ * un {@link Aviso} opcional recibe cada invariante completado y cada disparo
+ * que no correspondía a ninguna instancia.
+ */
+public class VerificadorEnLinea implements ObservadorDeDisparos {
+
+    /** Recibe los resultados a medida que ocurren, desde el hilo que dispara. */
+    public interface Aviso {
+
+        /**
+         * @param invariante invariante completado.
+         * @param cantidad   instancias completas de ese invariante hasta ahora.
+         */
+        default void completado(int invariante, long cantidad) {
+        }
+
+        /**
+         * @param transicion transición disparada que ninguna instancia esperaba.
+         * @param posicion   posición del disparo en la secuencia (desde 0).
+         */
+        default void violacion(int transicion, long posicion) {
+        }
+    }
+
+    private final ValidadorDeInvariantes validador;
+    private final Aviso aviso; // puede ser null
+    private long posicionPrimeraViolacion = -1;
+    private int transicionPrimeraViolacion = -1;
+
+    /**
+     * Crea el verificador y lo suscribe a la red. Debe crearse antes de que la
+     * red empiece a disparar.
+     *
+     * @param redDePetri  red a observar.
+     * @param invariantes cada invariante como la secuencia ordenada de sus
+     *                    transiciones.
+     * @param aviso       receptor de los resultados, o {@code null}.
+     */
+    public VerificadorEnLinea(RedDePetri redDePetri, int[][] invariantes, Aviso aviso) {
+        this.validador = new ValidadorDeInvariantes(redDePetri.getCantidadDeTransiciones(), invariantes);
+        this.aviso = aviso;
+        redDePetri.agregarObservador(this);
+    }
+
+    @Override
+    public synchronized void disparada(int transicion, long instanteNanos) {
+        int resultado = validador.procesar(transicion);
+        if (resultado >= 0) {
+            if (aviso != null)
+                aviso.completado(resultado, validador.getCantidad(resultado));
+        } else if (resultado == ValidadorDeInvariantes.SOBRANTE) {
+            long posicion = validador.getDisparos() - 1;
+            if (posicionPrimeraViolacion < 0) {
+                posicionPrimeraViolacion = posicion;
+                transicionPrimeraViolacion = transicion;
+            }
+            if (aviso != null)
+                aviso.violacion(transicion, posicion);
+        }
+    }
+
+    /** Indica si la secuencia hasta ahora es válida y no quedan instancias en curso. */
+    public synchronized boolean esValida() {
+        return validador.esValida();
+    }
+
+    /** Indica si algún disparo no correspondió a ninguna instancia. */
+    public synchronized boolean huboViolaciones() {
+        return validador.getSobrantes() > 0;
+    }
+
+    public synchronized long getCantidad(int invariante) {
+        return validador.getCantidad(invariante);
+    }
+
+    public synchronized long getTotal() {
+        return validador.getTotal();
+    }
+
+    public synchronized long getEnCurso() {
+        return validador.getEnCurso();
+    }
+
+    public synchronized long getSobrantes() {
+        return validador.getSobrantes();
+    }
+
+    /** Posición de la primera violación en la secuencia, o -1 si no hubo. */
+    public synchronized long getPosicionPrimeraViolacion() {
+        return posicionPrimeraViolacion;
+    }
+
+    /** Transición de la primera violación, o -1 si no hubo. */
+    public synchronized int getTransicionPrimeraViolacion() {
+        return transicionPrimeraViolacion;
+    }
+
+    public int getCantidadInvariantes() {
+        return validador.getCantidadInvariantes();
+    }
+
+    public String getNombre(int invariante) {
+        return validador.getNombre(invariante);
+    }
+}
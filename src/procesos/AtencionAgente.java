@@ -12,6 +12,9 @@ import monitor.MonitorInterface;
  */
 public class AtencionAgente implements Runnable {
 
+  /** Duración de la atención de un cliente, entre T2 y T5 o T3 y T4, en milisegundos. */
+  public static final long DURACION_MS = 140;
+
   private final NumeroDeAgente agente; // El número de agente que procesa la atención.
   private final MonitorInterface monitor; // Instancia del monitor utilizado para disparar las transiciones en la red
 
@@ -47,7 +50,7 @@ public class AtencionAgente implements Runnable {
           return;
         }
         try {
-          Thread.sleep(140); // Duracion del proceso
+          Thread.sleep(DURACION_MS); // Duracion del proceso
         } catch (InterruptedException e) {
           throw new RuntimeException(e);
         }
@@ -59,7 +62,7 @@ public class AtencionAgente implements Runnable {
           return;
         }
         try {
-          Thread.sleep(140); // Duracion del proceso
+          Thread.sleep(DURACION_MS); // Duracion del proceso
         } catch (InterruptedException e) {
           throw new RuntimeException(e);
         }
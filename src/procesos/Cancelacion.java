@@ -12,6 +12,9 @@ import monitor.MonitorInterface;
  */
 public class Cancelacion implements Runnable {
 
+  /** Duración de la cancelación, entre T7 y T8, en milisegundos. */
+  public static final long DURACION_MS = 90;
+
   private final MonitorInterface monitor; // Instancia del monitor utilizado para disparar las transiciones en la red
 
   /**
@@ -43,7 +46,7 @@ public class Cancelacion implements Runnable {
         return; // Disparo de T7
       }
       try {
-        Thread.sleep(90); // Duracion del proceso
+        Thread.sleep(DURACION_MS); // Duracion del proceso
       } catch (InterruptedException e) {
         throw new RuntimeException(e);
       }
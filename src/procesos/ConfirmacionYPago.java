@@ -13,6 +13,11 @@ import monitor.MonitorInterface;
  */
 public class ConfirmacionYPago implements Runnable {
 
+  /** Duración de la confirmación, entre T6 y T9, en milisegundos. */
+  public static final long DURACION_CONFIRMACION_MS = 40;
+  /** Duración del pago, entre T9 y T10, en milisegundos. */
+  public static final long DURACION_PAGO_MS = 70;
+
   private final MonitorInterface monitor; // Instancia del monitor utilizado para disparar las transiciones en la red
 
   /**
@@ -45,7 +50,7 @@ public class ConfirmacionYPago implements Runnable {
         return; // Disparo de T6
       }
       try {
-        Thread.sleep(40); // Duracion del Proceso Confirmacion
+        Thread.sleep(DURACION_CONFIRMACION_MS); // Duracion del Proceso Confirmacion
       } catch (InterruptedException e) {
         throw new RuntimeException(e);
       }
@@ -53,7 +58,7 @@ public class ConfirmacionYPago implements Runnable {
         return; // Disparo de T9
       }
       try {
-        Thread.sleep(70); // Duracion del Proceso de Pago
+        Thread.sleep(DURACION_PAGO_MS); // Duracion del Proceso de Pago
       } catch (InterruptedException e) {
         throw new RuntimeException(e);
       }
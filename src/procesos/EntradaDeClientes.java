@@ -13,6 +13,9 @@ import monitor.MonitorInterface;
  */
 public class EntradaDeClientes implements Runnable {
 
+  /** Duración del proceso de entrada de un cliente, entre T0 y T1, en milisegundos. */
+  public static final long DURACION_MS = 150;
+
   private final MonitorInterface monitor; // Instancia del monitor utilizado para disparar las transiciones en la red
 
   /**
@@ -46,7 +49,7 @@ public class EntradaDeClientes implements Runnable {
         return; // Disparo de T0
       }
       try {
-        Thread.sleep(150); // Duracion del Proceso
+        Thread.sleep(DURACION_MS); // Duracion del Proceso
       } catch (InterruptedException e) {
         throw new RuntimeException(e);
       }
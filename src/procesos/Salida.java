@@ -3,6 +3,9 @@ package procesos;
 import monitor.MonitorInterface;
 
 public class Salida implements Runnable {
+    /** Duración de la salida de un cliente, después de T11, en milisegundos. */
+    public static final long DURACION_MS = 10;
+
     private final MonitorInterface monitor;
 
     public Salida(MonitorInterface monitor) {
@@ -16,7 +19,7 @@ public class Salida implements Runnable {
                 return; // Disparo de T11
             }
             try {
-                Thread.sleep(10); // Duracion del proceso
+                Thread.sleep(DURACION_MS); // Duracion del proceso
             } catch (InterruptedException e) {
                 throw new RuntimeException(e);
             }
@@ -0,0 +1,201 @@
+package registro;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import petri.MatrizIncidenciaDispersa;
+import petri.ObservadorDeDisparos;
+import petri.RedDePetri;
+
+/**
+ * Graba cada disparo de una red en una traza binaria compacta, para analizarla
+ * después con {@link LectorDeTraza}. Se suscribe a la red como
+ * {@link ObservadorDeDisparos} y codifica cada disparo en un búfer directo que
+ * se vuelca al {@link FileChannel} cuando se llena, desde el mismo hilo que
+ * dispara.
+ *
+ * Formato del archivo:
+ * <ul>
+ * <li>Encabezado de {@value #ENCABEZADO} bytes: la marca {@code "TRAZ"}, la
+ * versión, la cantidad de lugares y de transiciones, el hash de la red
+ * ({@link #hashDeRed(MatrizIncidenciaDispersa, int[])}), la política, el
+ * instante inicial ({@link System#nanoTime()}), la fecha de inicio en
+ * milisegundos, la posición del cierre y la cantidad de disparos. Los dos
+ * últimos se completan al cerrar; si quedan en 0 la traza se cortó.</li>
+ * <li>Un registro por disparo, con tres varints: la transición, la diferencia
+ * de instante con el disparo anterior (en zigzag) y el id del hilo que
+ * disparó. Un disparo ocupa unos 4 a 6 bytes.</li>
+ * <li>Cierre: el marcado final (un entero por lugar) y los disparos de cada
+ * transición (un long por transición).</li>
+ * </ul>
+ * Los números de ancho fijo van en big-endian.
+ */
+public class EscritorDeTraza implements ObservadorDeDisparos, Closeable {
+
+    /** Marca de los archivos de traza, {@code "TRAZ"}. */
+    public static final int MARCA = 0x5452415A;
+    public static final int VERSION = 1;
+    /** Largo del encabezado en bytes. */
+    public static final int ENCABEZADO = 60;
+    static final int POSICION_CIERRE = 44; // posicion del campo con el inicio del cierre
+
+    private static final int LOTE = 64 * 1024;
+    private static final int MAXIMO_REGISTRO = 3 * 10; // tres varints de hasta 10 bytes
+
+    private final RedDePetri redDePetri;
+    private final FileChannel canal;
+    private final ByteBuffer lote = ByteBuffer.allocateDirect(LOTE);
+    private long anterior; // instante del disparo anterior
+    private long disparos;
+    private IOException error; // primer error al escribir; la traza queda cortada
+    private boolean cerrado;
+
+    /**
+     * Abre (truncando) el archivo, escribe el encabezado y se suscribe a la red.
+     * Debe crearse antes de que la red empiece a disparar.
+     *
+     * @param archivo    archivo de la traza.
+     * @param redDePetri red a grabar.
+     * @param politica   número de la política en uso (se guarda en el
+     *                   encabezado).
+     * @throws IOException si no se puede abrir o escribir el archivo.
+     */
+    public EscritorDeTraza(Path archivo, RedDePetri redDePetri, int politica) throws IOException {
+        this.redDePetri = redDePetri;
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        MatrizIncidenciaDispersa matriz = redDePetri.getMatrizDispersa();
+        anterior = System.nanoTime();
+        ByteBuffer encabezado = ByteBuffer.allocate(ENCABEZADO);
+        encabezado.putInt(MARCA).putInt(VERSION).putInt(matriz.getCantidadLugares())
+                .putInt(matriz.getCantidadTransiciones())
+                .putLong(hashDeRed(matriz, redDePetri.getMarcado())).putInt(politica).putLong(anterior)
+                .putLong(System.currentTimeMillis()).putLong(0).putLong(0).flip();
+        try {
+            while (encabezado.hasRemaining())
+                canal.write(encabezado);
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+        redDePetri.agregarObservador(this);
+    }
+
+    /**
+     * Hash FNV-1a de 64 bits de la estructura de la red (dimensiones y arcos) y
+     * de su marcado inicial. Sirve para comprobar que una traza corresponde a
+     * una red antes de reproducirla.
+     */
+    public static long hashDeRed(MatrizIncidenciaDispersa matriz, int[] marcadoInicial) {
+        long hash = 0xcbf29ce484222325L;
+        hash = mezclar(hash, matriz.getCantidadLugares());
+        hash = mezclar(hash, matriz.getCantidadTransiciones());
+        int[] lugares = matriz.getLugaresDeArcos();
+        int[] valores = matriz.getValoresPorColumna();
+        for (int t = 0; t < matriz.getCantidadTransiciones(); t++) {
+            for (int i = matriz.inicioColumna(t); i < matriz.finColumna(t); i++) {
+                hash = mezclar(hash, t);
+                hash = mezclar(hash, lugares[i]);
+                hash = mezclar(hash, valores[i]);
+            }
+        }
+        for (int m : marcadoInicial)
+            hash = mezclar(hash, m);
+        return hash;
+    }
+
+    private static long mezclar(long hash, int valor) {
+        for (int i = 0; i < 4; i++) {
+            hash ^= (valor >>> (8 * i)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Codifica el disparo. La red llama a los observadores de a uno, con el lock
+     * del que dispara, así que los registros quedan en el orden de los disparos.
+     */
+    @Override
+    public void disparada(int transicion, long instanteNanos) {
+        if (error != null || cerrado)
+            return;
+        if (lote.remaining() < MAXIMO_REGISTRO && !vaciar())
+            return;
+        ponerVarint(transicion);
+        long delta = instanteNanos - anterior;
+        ponerVarint((delta << 1) ^ (delta >> 63));
+        ponerVarint(Thread.currentThread().getId());
+        anterior = instanteNanos;
+        disparos++;
+    }
+
+    private void ponerVarint(long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            lote.put((byte) ((valor & 0x7F) | 0x80));
+            valor >>>= 7;
+        }
+        lote.put((byte) valor);
+    }
+
+    private boolean vaciar() {
+        lote.flip();
+        try {
+            while (lote.hasRemaining())
+                canal.write(lote);
+        } catch (IOException e) {
+            error = e;
+            return false;
+        } finally {
+            lote.clear();
+        }
+        return true;
+    }
+
+    /** Cantidad de disparos grabados. */
+    public long getDisparos() {
+        return disparos;
+    }
+
+    /**
+     * Escribe lo que queda en el búfer, el cierre con el marcado final y
+     * completa el encabezado. Debe llamarse cuando la red ya no dispara.
+     *
+     * @throws IOException si falló alguna escritura, incluso una anterior desde
+     *                     el hilo que disparaba.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (cerrado)
+            return;
+        cerrado = true;
+        try {
+            if (error == null && vaciar()) {
+                long posicionCierre = canal.position();
+                int[] marcado = redDePetri.getMarcado();
+                long[] porTransicion = redDePetri.getDisparos();
+                ByteBuffer cierre = ByteBuffer.allocate(4 * marcado.length + 8 * porTransicion.length);
+                for (int m : marcado)
+                    cierre.putInt(m);
+                for (long d : porTransicion)
+                    cierre.putLong(d);
+                cierre.flip();
+                while (cierre.hasRemaining())
+                    canal.write(cierre);
+                ByteBuffer campos = ByteBuffer.allocate(16).putLong(posicionCierre).putLong(disparos).flip();
+                while (campos.hasRemaining())
+                    canal.write(campos, POSICION_CIERRE + campos.position());
+            }
+        } catch (IOException e) {
+            error = e;
+        } finally {
+            canal.close();
+        }
+        if (error != null)
+            throw error;
+    }
+}
@@ -0,0 +1,226 @@
+package registro;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Lee una traza grabada por {@link EscritorDeTraza}. El archivo se mapea en
+ * memoria ({@link MappedByteBuffer}), así que recorrer millones de disparos no
+ * copia el archivo ni crea objetos por disparo: {@link #siguiente()} avanza al
+ * próximo registro y los getters devuelven sus campos.
+ *
+ * Si la traza se cortó (el programa terminó sin cerrarla) se leen los
+ * registros completos que haya y {@link #estaCompleta()} devuelve
+ * {@code false}.
+ */
+public class LectorDeTraza {
+
+    private final MappedByteBuffer datos;
+    private final int lugares;
+    private final int transiciones;
+    private final long hashDeRed;
+    private final int politica;
+    private final long instanteInicial;
+    private final long inicioMillis;
+    private final long cantidadDisparos; // 0 si la traza se corto
+    private final int finDeRegistros;
+    private final int[] marcadoFinal; // null si la traza se corto
+    private final long[] disparosFinales; // null si la traza se corto
+
+    private int transicion = -1;
+    private long instante;
+    private long hilo;
+    private long leidos;
+
+    /**
+     * Mapea el archivo y lee el encabezado y el cierre.
+     *
+     * @throws IOException si no se puede leer, no es una traza o es de otra
+     *                     versión, o supera los 2 GB que admite un mapeo.
+     */
+    public LectorDeTraza(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamanio = canal.size();
+            if (tamanio > Integer.MAX_VALUE) {
+                throw new IOException("La traza supera los 2 GB: " + archivo);
+            }
+            datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanio);
+        }
+        if (datos.limit() < EscritorDeTraza.ENCABEZADO || datos.getInt(0) != EscritorDeTraza.MARCA) {
+            throw new IOException("El archivo no es una traza: " + archivo);
+        }
+        if (datos.getInt(4) != EscritorDeTraza.VERSION) {
+            throw new IOException("Version de traza no soportada: " + datos.getInt(4));
+        }
+        lugares = datos.getInt(8);
+        transiciones = datos.getInt(12);
+        hashDeRed = datos.getLong(16);
+        politica = datos.getInt(24);
+        instanteInicial = datos.getLong(28);
+        inicioMillis = datos.getLong(36);
+        long cierre = datos.getLong(EscritorDeTraza.POSICION_CIERRE);
+        long largoCierre = 4L * lugares + 8L * transiciones;
+        if (cierre >= EscritorDeTraza.ENCABEZADO && cierre + largoCierre == datos.limit()) {
+            finDeRegistros = (int) cierre;
+            cantidadDisparos = datos.getLong(EscritorDeTraza.POSICION_CIERRE + 8);
+            marcadoFinal = new int[lugares];
+            disparosFinales = new long[transiciones];
+            int p = finDeRegistros;
+            for (int i = 0; i < lugares; i++, p += 4)
+                marcadoFinal[i] = datos.getInt(p);
+            for (int t = 0; t < transiciones; t++, p += 8)
+                disparosFinales[t] = datos.getLong(p);
+        } else {
+            // Si el cierre quedo anotado pero el archivo se corto dentro de el, los
+            // registros terminan donde empieza el cierre
+            finDeRegistros = cierre >= EscritorDeTraza.ENCABEZADO && cierre < datos.limit() ? (int) cierre
+                    : datos.limit();
+            cantidadDisparos = 0;
+            marcadoFinal = null;
+            disparosFinales = null;
+        }
+        reiniciar();
+    }
+
+    /** Vuelve al primer registro. */
+    public void reiniciar() {
+        datos.limit(finDeRegistros).position(EscritorDeTraza.ENCABEZADO);
+        instante = instanteInicial;
+        transicion = -1;
+        hilo = 0;
+        leidos = 0;
+    }
+
+    /**
+     * Avanza al próximo disparo.
+     *
+     * @return {@code false} si no quedan registros completos.
+     */
+    public boolean siguiente() {
+        if (!datos.hasRemaining())
+            return false;
+        int inicio = datos.position();
+        try {
+            int t = (int) leerVarint(datos);
+            long delta = leerVarint(datos);
+            long h = leerVarint(datos);
+            transicion = t;
+            instante += (delta >>> 1) ^ -(delta & 1);
+            hilo = h;
+            leidos++;
+            return true;
+        } catch (BufferUnderflowException e) {
+            // Registro cortado al final de una traza incompleta
+            datos.position(inicio);
+            return false;
+        }
+    }
+
+    private static long leerVarint(ByteBuffer datos) {
+        byte primero = datos.get();
+        if (primero >= 0)
+            return primero; // la mayoria de los valores entran en un byte
+        long valor = primero & 0x7F;
+        int corrimiento = 7;
+        byte b;
+        do {
+            b = datos.get();
+            valor |= (long) (b & 0x7F) << corrimiento;
+            corrimiento += 7;
+        } while (b < 0);
+        return valor;
+    }
+
+    /** Transición del disparo actual. */
+    public int getTransicion() {
+        return transicion;
+    }
+
+    /** Instante ({@link System#nanoTime()}) del disparo actual. */
+    public long getInstanteNanos() {
+        return instante;
+    }
+
+    /** Nanosegundos desde que se abrió la traza hasta el disparo actual. */
+    public long getTranscurridoNanos() {
+        return instante - instanteInicial;
+    }
+
+    /** Id del hilo que hizo el disparo actual. */
+    public long getHilo() {
+        return hilo;
+    }
+
+    /** Disparos leídos desde el principio. */
+    public long getLeidos() {
+        return leidos;
+    }
+
+    public int getCantidadLugares() {
+        return lugares;
+    }
+
+    public int getCantidadTransiciones() {
+        return transiciones;
+    }
+
+    /** Hash de la red grabada; ver {@link EscritorDeTraza#hashDeRed}. */
+    public long getHashDeRed() {
+        return hashDeRed;
+    }
+
+    public int getPolitica() {
+        return politica;
+    }
+
+    /** Fecha de inicio de la grabación ({@link System#currentTimeMillis()}). */
+    public long getInicioMillis() {
+        return inicioMillis;
+    }
+
+    /** Indica si la traza se cerró bien y tiene el marcado final. */
+    public boolean estaCompleta() {
+        return marcadoFinal != null;
+    }
+
+    /**
+     * Cantidad de disparos grabados según el cierre.
+     *
+     * @throws IllegalStateException si la traza está incompleta.
+     */
+    public long getCantidadDisparos() {
+        verificarCompleta();
+        return cantidadDisparos;
+    }
+
+    /**
+     * Copia del marcado al cerrar la traza.
+     *
+     * @throws IllegalStateException si la traza está incompleta.
+     */
+    public int[] getMarcadoFinal() {
+        verificarCompleta();
+        return marcadoFinal.clone();
+    }
+
+    /**
+     * Copia de los disparos de cada transición al cerrar la traza.
+     *
+     * @throws IllegalStateException si la traza está incompleta.
+     */
+    public long[] getDisparosFinales() {
+        verificarCompleta();
+        return disparosFinales.clone();
+    }
+
+    private void verificarCompleta() {
+        if (!estaCompleta()) {
+            throw new IllegalStateException("La traza esta incompleta: no tiene cierre.");
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package registro;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registro asincrónico a archivo. Los productores copian cada entrada en un
+ * anillo de bytes acotado y siguen; un único hilo daemon las saca en orden y
+ * las escribe en lotes a través de un {@link FileChannel}. Así la E/S del
+ * registro no compite con la simulación.
+ *
+ * Escribir no toma locks ni crea objetos: el productor reserva su lugar en el
+ * anillo con un CAS, copia los bytes y publica el largo de la entrada con
+ * semántica release; el consumidor lo lee con acquire. Si el anillo está lleno
+ * la entrada se descarta y se cuenta ({@link #getDescartados()}), salvo con
+ * {@link #escribirEsperando(CharSequence)}, que espera a que haya lugar. Sin
+ * nada que escribir, el consumidor duerme cada vez más (de 0,1 ms hasta 10 ms);
+ * un productor que encuentra el anillo lleno lo despierta.
+ *
+ * Además de texto (UTF-8), acepta registros binarios compactos para eventos
+ * frecuentes, como uno por disparo: un tipo, un instante
+ * ({@link System#nanoTime()}) y un valor, codificados como varints. En formato
+ * {@link Formato#TEXTO} el hilo consumidor los convierte a una línea
+ * {@code R<tipo> <instante> <valor>}; en formato
+ * {@link Formato#BINARIO} se escriben tal cual, cada entrada precedida por su
+ * largo en varint, y {@link #volcar(Path, Path)} los pasa a texto después.
+ */
+public class RegistroAsincrono implements Closeable {
+
+    /** Formato del archivo de salida. */
+    public enum Formato {
+        TEXTO, // el texto tal cual y los registros binarios formateados
+        BINARIO // cada entrada como [largo varint][tipo de entrada][contenido]
+    }
+
+    private static final VarHandle ENTERO = MethodHandles.byteArrayViewVarHandle(int[].class,
+            ByteOrder.nativeOrder());
+    private static final VarHandle ESCRITO;
+    private static final byte ENTRADA_TEXTO = 0;
+    private static final byte ENTRADA_REGISTRO = 1;
+    private static final int ENCABEZADO = 4; // largo de la entrada, alineado a 4 bytes
+    private static final int CAPACIDAD_MINIMA = 4096;
+    private static final int LOTE = 64 * 1024;
+    private static final long ESPERA_NANOS = 100_000; // 0,1 ms sin nada que escribir
+    private static final long ESPERA_MAXIMA_NANOS = 10_000_000; // tope de la espera del consumidor ocioso
+    private static final long CERRADO = Long.MIN_VALUE; // bit de escrito: no se reserva mas
+
+    static {
+        try {
+            ESCRITO = MethodHandles.lookup().findVarHandle(RegistroAsincrono.class, "escrito", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final byte[] anillo;
+    private final int mascara;
+    private final Formato formato;
+    private final FileChannel canal;
+    private final Thread hilo;
+    private final AtomicLong descartados = new AtomicLong();
+    private volatile long escrito; // bytes reservados por los productores, y el bit CERRADO
+    private volatile long leido; // bytes ya consumidos (el lugar se puede reusar)
+
+    /**
+     * Abre (truncando) el archivo y lanza el hilo consumidor.
+     *
+     * @param archivo   archivo de salida.
+     * @param formato   formato de salida.
+     * @param capacidad tamaño del anillo en bytes; se redondea a la potencia de 2
+     *                  siguiente (mínimo 4 KB). Una entrada no puede superarlo.
+     * @throws IOException si no se puede abrir el archivo.
+     */
+    public RegistroAsincrono(Path archivo, Formato formato, int capacidad) throws IOException {
+        int tamanio = Integer.highestOneBit(Math.max(CAPACIDAD_MINIMA, capacidad - 1)) << 1;
+        this.anillo = new byte[tamanio];
+        this.mascara = tamanio - 1;
+        this.formato = formato;
+        this.canal = FileChannel.open(archivo, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        hilo = new Thread(this::consumir, "registro-asincrono");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Agrega el texto sin bloquear (no agrega fin de línea).
+     *
+     * @return {@code false} si el anillo estaba lleno o el registro cerrado y el
+     *         texto se descartó.
+     */
+    public boolean escribir(CharSequence texto) {
+        if (intentarTexto(texto))
+            return true;
+        descartar();
+        return false;
+    }
+
+    /**
+     * Agrega el texto esperando a que haya lugar en el anillo. Para informes que
+     * no pueden perder datos y no están en el camino del monitor.
+     *
+     * @throws IllegalArgumentException si el texto no entra en el anillo.
+     * @throws IllegalStateException    si el registro está cerrado.
+     */
+    public void escribirEsperando(CharSequence texto) {
+        if (alinear(ENCABEZADO + 1 + largoUtf8(texto)) > anillo.length) {
+            throw new IllegalArgumentException("La entrada no entra en el anillo del registro.");
+        }
+        while (!intentarTexto(texto)) {
+            if (cerrado()) {
+                throw new IllegalStateException("El registro esta cerrado.");
+            }
+            LockSupport.unpark(hilo); // el consumidor puede estar durmiendo
+            LockSupport.parkNanos(ESPERA_NANOS);
+        }
+    }
+
+    /**
+     * Agrega un registro binario sin bloquear.
+     *
+     * @param tipo     tipo del registro (definido por quien escribe).
+     * @param instante instante del evento ({@link System#nanoTime()}).
+     * @param valor    valor del registro.
+     * @return {@code false} si se descartó.
+     */
+    public boolean registrar(int tipo, long instante, int valor) {
+        int largo = 1 + largoVarint(tipo) + largoVarint(instante) + 1 + largoVarint(zigzag(valor));
+        long inicio = reservar(largo);
+        if (inicio < 0) {
+            descartar();
+            return false;
+        }
+        long p = inicio + ENCABEZADO;
+        anillo[(int) (p++ & mascara)] = ENTRADA_REGISTRO;
+        p = ponerVarint(p, tipo);
+        p = ponerVarint(p, instante);
+        p = ponerVarint(p, 1); // cantidad de valores
+        ponerVarint(p, zigzag(valor));
+        publicar(inicio, largo);
+        return true;
+    }
+
+    /** Cantidad de entradas descartadas por falta de lugar. */
+    public long getDescartados() {
+        return descartados.get();
+    }
+
+    /**
+     * Espera a que el consumidor escriba todas las entradas reservadas, y cierra
+     * el archivo. El cierre se marca en la misma palabra que las reservas, así
+     * que toda entrada aceptada antes se escribe y las que se intenten agregar
+     * después se descartan.
+     */
+    @Override
+    public void close() throws IOException {
+        ESCRITO.getAndBitwiseOr(this, CERRADO);
+        LockSupport.unpark(hilo);
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        canal.close();
+    }
+
+    /**
+     * Convierte un archivo escrito en formato {@link Formato#BINARIO} al texto
+     * que habría producido el formato {@link Formato#TEXTO}.
+     *
+     * @param binario archivo binario.
+     * @param texto   archivo de texto a crear (se trunca si existe).
+     * @throws IOException si falla la lectura o escritura.
+     */
+    public static void volcar(Path binario, Path texto) throws IOException {
+        try (FileChannel entrada = FileChannel.open(binario, StandardOpenOption.READ);
+                FileChannel salida = FileChannel.open(texto, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer datos = entrada.map(FileChannel.MapMode.READ_ONLY, 0, entrada.size());
+            ByteBuffer lote = ByteBuffer.allocateDirect(LOTE);
+            while (datos.hasRemaining()) {
+                int largo = 0;
+                int corrimiento = 0;
+                byte b;
+                do {
+                    b = datos.get();
+                    largo |= (b & 0x7F) << corrimiento;
+                    corrimiento += 7;
+                } while (b < 0);
+                byte[] entradaActual = new byte[largo];
+                datos.get(entradaActual);
+                formatear(entradaActual, 0, largo, -1, lote, salida);
+            }
+            vaciar(lote, salida);
+        }
+    }
+
+    // Productores
+
+    private boolean intentarTexto(CharSequence texto) {
+        int largo = 1 + largoUtf8(texto);
+        long inicio = reservar(largo);
+        if (inicio < 0)
+            return false;
+        long p = inicio + ENCABEZADO;
+        anillo[(int) (p++ & mascara)] = ENTRADA_TEXTO;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                anillo[(int) (p++ & mascara)] = (byte) c;
+            } else if (c < 0x800) {
+                anillo[(int) (p++ & mascara)] = (byte) (0xC0 | c >> 6);
+                anillo[(int) (p++ & mascara)] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                        && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, texto.charAt(++i));
+                    anillo[(int) (p++ & mascara)] = (byte) (0xF0 | cp >> 18);
+                    anillo[(int) (p++ & mascara)] = (byte) (0x80 | cp >> 12 & 0x3F);
+                    anillo[(int) (p++ & mascara)] = (byte) (0x80 | cp >> 6 & 0x3F);
+                    anillo[(int) (p++ & mascara)] = (byte) (0x80 | cp & 0x3F);
+                } else {
+                    anillo[(int) (p++ & mascara)] = '?'; // sustituto suelto
+                }
+            } else {
+                anillo[(int) (p++ & mascara)] = (byte) (0xE0 | c >> 12);
+                anillo[(int) (p++ & mascara)] = (byte) (0x80 | c >> 6 & 0x3F);
+                anillo[(int) (p++ & mascara)] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        publicar(inicio, largo);
+        return true;
+    }
+
+    /**
+     * Reserva lugar para una entrada de {@code largo} bytes.
+     *
+     * @return la posición de la entrada, o -1 si no hay lugar.
+     */
+    private long reservar(int largo) {
+        int total = alinear(ENCABEZADO + largo);
+        if (total > anillo.length)
+            return -1;
+        while (true) {
+            long inicio = escrito;
+            if ((inicio & CERRADO) != 0 || inicio + total - leido > anillo.length)
+                return -1;
+            if (ESCRITO.compareAndSet(this, inicio, inicio + total))
+                return inicio;
+        }
+    }
+
+    // Anillo lleno (o cerrado): se cuenta la entrada perdida y se despierta al
+    // consumidor por si estaba durmiendo
+    private void descartar() {
+        descartados.incrementAndGet();
+        LockSupport.unpark(hilo);
+    }
+
+    private boolean cerrado() {
+        return (escrito & CERRADO) != 0;
+    }
+
+    // El largo se escribe al final, con release: el consumidor que lo ve
+    // distinto de cero ve tambien el contenido
+    private void publicar(long inicio, int largo) {
+        ENTERO.setRelease(anillo, (int) (inicio & mascara), largo);
+    }
+
+    private long ponerVarint(long p, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            anillo[(int) (p++ & mascara)] = (byte) (valor & 0x7F | 0x80);
+            valor >>>= 7;
+        }
+        anillo[(int) (p++ & mascara)] = (byte) valor;
+        return p;
+    }
+
+    // Consumidor
+
+    private void consumir() {
+        ByteBuffer lote = ByteBuffer.allocateDirect(LOTE);
+        long posicion = leido;
+        long espera = ESPERA_NANOS;
+        try {
+            while (true) {
+                int indice = (int) (posicion & mascara);
+                int largo = (int) ENTERO.getAcquire(anillo, indice);
+                if (largo == 0) {
+                    if (lote.position() > 0) {
+                        vaciar(lote, canal); // no hay mas por ahora: se escribe el lote
+                    } else if (escrito == (posicion | CERRADO)) {
+                        return; // cerrado y sin reservas pendientes de publicar
+                    } else {
+                        LockSupport.parkNanos(espera);
+                        espera = Math.min(2 * espera, ESPERA_MAXIMA_NANOS);
+                    }
+                    continue;
+                }
+                espera = ESPERA_NANOS;
+                if (formato == Formato.BINARIO) {
+                    ponerVarint(lote, largo, canal);
+                    for (int i = 0; i < largo; i++)
+                        poner(lote, anillo[(indice + ENCABEZADO + i) & mascara], canal);
+                } else {
+                    formatear(anillo, indice + ENCABEZADO, largo, mascara, lote, canal);
+                }
+                // Se limpia la entrada para que su lugar vuelva a leerse como vacio
+                int total = alinear(ENCABEZADO + largo);
+                for (int i = 0; i < total; i++)
+                    anillo[(indice + i) & mascara] = 0;
+                posicion += total;
+                leido = posicion;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error al escribir el registro.", e);
+        }
+    }
+
+    /**
+     * Escribe en el lote el texto de una entrada que empieza en
+     * {@code datos[desde & mascara]}.
+     */
+    private static void formatear(byte[] datos, int desde, int largo, int mascara, ByteBuffer lote,
+            FileChannel canal) throws IOException {
+        if (datos[desde & mascara] == ENTRADA_TEXTO) {
+            for (int i = 1; i < largo; i++)
+                poner(lote, datos[(desde + i) & mascara], canal);
+            return;
+        }
+        int[] p = { desde + 1 }; // posicion de lectura
+        long tipo = leerVarint(datos, p, mascara);
+        long instante = leerVarint(datos, p, mascara);
+        long cantidad = leerVarint(datos, p, mascara);
+        poner(lote, (byte) 'R', canal);
+        ponerNumero(lote, tipo, canal);
+        poner(lote, (byte) ' ', canal);
+        ponerNumero(lote, instante, canal);
+        for (long i = 0; i < cantidad; i++) {
+            long valor = leerVarint(datos, p, mascara);
+            poner(lote, (byte) ' ', canal);
+            ponerNumero(lote, valor >>> 1 ^ -(valor & 1), canal);
+        }
+        poner(lote, (byte) '\n', canal);
+    }
+
+    private static long leerVarint(byte[] datos, int[] p, int mascara) {
+        long valor = 0;
+        int corrimiento = 0;
+        byte b;
+        do {
+            b = datos[p[0]++ & mascara];
+            valor |= (long) (b & 0x7F) << corrimiento;
+            corrimiento += 7;
+        } while (b < 0);
+        return valor;
+    }
+
+    private static void poner(ByteBuffer lote, byte b, FileChannel canal) throws IOException {
+        if (!lote.hasRemaining())
+            vaciar(lote, canal);
+        lote.put(b);
+    }
+
+    private static void ponerVarint(ByteBuffer lote, long valor, FileChannel canal) throws IOException {
+        while ((valor & ~0x7FL) != 0) {
+            poner(lote, (byte) (valor & 0x7F | 0x80), canal);
+            valor >>>= 7;
+        }
+        poner(lote, (byte) valor, canal);
+    }
+
+    private static void ponerNumero(ByteBuffer lote, long valor, FileChannel canal) throws IOException {
+        if (valor < 0) {
+            poner(lote, (byte) '-', canal);
+        }
+        // Digitos de mas significativo a menos, sin armar un String
+        long divisor = 1;
+        while (Math.abs(valor / divisor) >= 10)
+            divisor *= 10;
+        for (; divisor > 0; divisor /= 10)
+            poner(lote, (byte) ('0' + Math.abs(valor / divisor % 10)), canal);
+    }
+
+    private static void vaciar(ByteBuffer lote, FileChannel canal) throws IOException {
+        lote.flip();
+        while (lote.hasRemaining())
+            canal.write(lote);
+        lote.clear();
+    }
+
+    private static int alinear(int largo) {
+        return (largo + 3) & ~3;
+    }
+
+    private static long zigzag(int valor) {
+        return (valor << 1 ^ valor >> 31) & 0xFFFFFFFFL;
+    }
+
+    private static int largoVarint(long valor) {
+        int largo = 1;
+        while ((valor & ~0x7FL) != 0) {
+            valor >>>= 7;
+            largo++;
+        }
+        return largo;
+    }
+
+    private static int largoUtf8(CharSequence texto) {
+        int largo = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                largo++;
+            } else if (c < 0x800) {
+                largo += 2;
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < texto.length()
+                        && Character.isLowSurrogate(texto.charAt(i + 1))) {
+                    largo += 4;
+                    i++;
+                } else {
+                    largo++;
+                }
+            } else {
+                largo += 3;
+            }
+        }
+        return largo;
+    }
+}
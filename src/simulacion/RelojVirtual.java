@@ -0,0 +1,29 @@
+package simulacion;
+
+import petri.Reloj;
+
+/**
+ * Reloj de la simulación de eventos discretos. El tiempo solo avanza cuando el
+ * simulador lo indica, saltando directamente al próximo evento.
+ */
+public class RelojVirtual implements Reloj {
+
+    private long ahora; // instante actual, en nanosegundos virtuales
+
+    @Override
+    public long nanoTime() {
+        return ahora;
+    }
+
+    /**
+     * Avanza el reloj hasta el instante indicado.
+     *
+     * @throws IllegalArgumentException si el instante es anterior al actual.
+     */
+    public void avanzarA(long instanteNanos) {
+        if (instanteNanos < ahora) {
+            throw new IllegalArgumentException("El reloj virtual no puede retroceder.");
+        }
+        ahora = instanteNanos;
+    }
+}
@@ -0,0 +1,258 @@
+package simulacion;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+
+import petri.AlfaYBeta;
+import petri.RedDePetri;
+
+/**
+ * Simulador de eventos discretos de un solo hilo. Ejecuta la misma
+ * {@link RedDePetri}, con sus ventanas {@link AlfaYBeta} y su política, sobre
+ * un {@link RelojVirtual}: en lugar de dormir, cada proceso agenda el instante
+ * virtual en el que vuelve a pedir su próxima transición, y el reloj salta
+ * directamente al próximo evento (la llegada de un proceso o la apertura de una
+ * ventana alfa).
+ *
+ * Reproduce las reglas del {@code Monitor}: un proceso solo dispara si su
+ * transición está sensibilizada por tokens, su ventana no está en alfa y la
+ * política lo admite; después de cada disparo se reinicia la ventana de la
+ * transición disparada, se inician las de las nuevas sensibilizadas y se
+ * consulta la política entre las transiciones con procesos esperando.
+ */
+public class SimuladorDeEventos {
+
+    private static final long NANOS_POR_MILI = 1_000_000L;
+
+    private final RedDePetri redDePetri;
+    private final RelojVirtual reloj;
+    private final AlfaYBeta[] ventanas;
+    private final int cantidadTransiciones;
+
+    private final PriorityQueue<Proceso> listos = new PriorityQueue<>(); // procesos "durmiendo", por instante
+    private final ArrayDeque<Proceso>[] esperando; // procesos bloqueados en cada transicion, en orden de llegada
+    private final long[] conEspera; // bitset de transiciones con procesos esperando
+    private final long[] auxiliar; // bitset reutilizable para armar candidatos
+
+    private int transicionAdespertar = -1; // decision de la politica, -1 si se admiten todas
+    private long orden; // desempate entre procesos que llegan en el mismo instante
+    private long disparos;
+
+    /**
+     * Crea el simulador y reemplaza el reloj de las ventanas de la red por uno
+     * virtual.
+     *
+     * @param redDePetri red a simular (con su marcado inicial).
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public SimuladorDeEventos(RedDePetri redDePetri) {
+        this.redDePetri = redDePetri;
+        this.reloj = new RelojVirtual();
+        this.cantidadTransiciones = redDePetri.getMatrizDispersa().getCantidadTransiciones();
+        this.ventanas = redDePetri.getAlfayBeta().toArray(new AlfaYBeta[0]);
+        for (AlfaYBeta ventana : ventanas)
+            ventana.setReloj(reloj);
+        esperando = new ArrayDeque[cantidadTransiciones];
+        for (int t = 0; t < cantidadTransiciones; t++)
+            esperando[t] = new ArrayDeque<>();
+        conEspera = new long[(cantidadTransiciones + 63) >>> 6];
+        auxiliar = new long[conEspera.length];
+    }
+
+    /**
+     * Agrega instancias de un proceso cíclico. Cada instancia equivale a un hilo
+     * que repite: disparar {@code transiciones[i]} y dormir
+     * {@code duracionesMs[i]}.
+     *
+     * @param transiciones transiciones que dispara el proceso, en orden.
+     * @param duracionesMs tiempo de proceso después de cada disparo, en
+     *                     milisegundos.
+     * @param instancias   cantidad de hilos equivalentes.
+     */
+    public void agregarProceso(int[] transiciones, long[] duracionesMs, int instancias) {
+        if (transiciones.length == 0 || transiciones.length != duracionesMs.length) {
+            throw new IllegalArgumentException("Cada transicion del proceso debe tener su duracion.");
+        }
+        long[] duracionesNanos = new long[duracionesMs.length];
+        for (int i = 0; i < duracionesMs.length; i++)
+            duracionesNanos[i] = duracionesMs[i] * NANOS_POR_MILI;
+        for (int i = 0; i < instancias; i++) {
+            Proceso proceso = new Proceso(transiciones, duracionesNanos);
+            proceso.instante = reloj.nanoTime();
+            proceso.orden = orden++;
+            listos.add(proceso);
+        }
+    }
+
+    /**
+     * Ejecuta la simulación hasta que la red termina o ningún proceso puede
+     * avanzar.
+     *
+     * @return la cantidad de transiciones disparadas.
+     */
+    public long ejecutar() {
+        while (!redDePetri.isTermino()) {
+            llegar();
+            int t = elegirDisparable();
+            if (t >= 0) {
+                disparar(t);
+                continue;
+            }
+            long proximo = proximoEvento();
+            if (proximo == Long.MAX_VALUE) {
+                break; // ningun proceso puede avanzar
+            }
+            reloj.avanzarA(proximo);
+        }
+        return disparos;
+    }
+
+    /** Devuelve el tiempo virtual transcurrido, en nanosegundos. */
+    public long getTiempoVirtualNanos() {
+        return reloj.nanoTime();
+    }
+
+    public long getDisparos() {
+        return disparos;
+    }
+
+    // Los procesos cuyo tiempo de proceso termino pasan a esperar su transicion
+    private void llegar() {
+        long ahora = reloj.nanoTime();
+        while (!listos.isEmpty() && listos.peek().instante <= ahora) {
+            Proceso proceso = listos.poll();
+            int t = proceso.transiciones[proceso.paso];
+            esperando[t].add(proceso);
+            conEspera[t >>> 6] |= 1L << t;
+        }
+    }
+
+    private int elegirDisparable() {
+        if (transicionAdespertar >= 0) {
+            int elegida = transicionAdespertar;
+            if (esperando[elegida].isEmpty() || !redDePetri.sensibilizado(elegida)) {
+                transicionAdespertar = -1; // la decision quedo vieja
+            } else {
+                return ventanas[elegida].verificarVentana() != AlfaYBeta.Estado.ALFA ? elegida : -1;
+            }
+        }
+
+        // Con espera, sensibilizadas por token y fuera de alfa
+        long[] sensibilizadas = redDePetri.getPalabrasSensibilizadas();
+        boolean hay = false;
+        for (int w = 0; w < auxiliar.length; w++) {
+            long palabra = conEspera[w] & sensibilizadas[w];
+            long candidatas = palabra;
+            while (palabra != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+                if (ventanas[t].verificarVentana() == AlfaYBeta.Estado.ALFA)
+                    candidatas &= ~(1L << t);
+            }
+            auxiliar[w] = candidatas;
+            hay |= candidatas != 0;
+        }
+        if (!hay) {
+            return -1;
+        }
+        int elegida = redDePetri.consultarPolitica(auxiliar);
+        if (elegida >= 0) {
+            return elegida;
+        }
+
+        // Sin conflicto: dispara el proceso que llego primero
+        long primero = Long.MAX_VALUE;
+        for (int w = 0; w < auxiliar.length; w++) {
+            long palabra = auxiliar[w];
+            while (palabra != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+                if (esperando[t].peek().orden < primero) {
+                    primero = esperando[t].peek().orden;
+                    elegida = t;
+                }
+            }
+        }
+        return elegida;
+    }
+
+    private void disparar(int t) {
+        Proceso proceso = esperando[t].poll();
+        if (esperando[t].isEmpty())
+            conEspera[t >>> 6] &= ~(1L << t);
+
+        redDePetri.dispararTransicion(t);
+        disparos++;
+        actualizarVentanas(t);
+
+        // El proceso "duerme" su tiempo de proceso y pide la siguiente transicion
+        long duracion = proceso.duraciones[proceso.paso];
+        proceso.paso = (proceso.paso + 1) % proceso.transiciones.length;
+        proceso.instante = reloj.nanoTime() + duracion;
+        proceso.orden = orden++;
+        listos.add(proceso);
+
+        // Como despertarHilos: la politica decide entre las que tienen procesos
+        // esperando y estan sensibilizadas por token
+        long[] sensibilizadas = redDePetri.getPalabrasSensibilizadas();
+        boolean hay = false;
+        for (int w = 0; w < auxiliar.length; w++) {
+            auxiliar[w] = conEspera[w] & sensibilizadas[w];
+            hay |= auxiliar[w] != 0;
+        }
+        transicionAdespertar = hay ? redDePetri.consultarPolitica(auxiliar) : -1;
+    }
+
+    private void actualizarVentanas(int disparada) {
+        ventanas[disparada].reiniciar();
+        long[] sensibilizadas = redDePetri.getPalabrasSensibilizadas();
+        for (int w = 0; w < sensibilizadas.length; w++) {
+            long palabra = sensibilizadas[w];
+            while (palabra != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+                if (!ventanas[t].estaIniciada())
+                    ventanas[t].iniciar();
+            }
+        }
+    }
+
+    // Proximo instante en el que algo puede cambiar: una llegada o la apertura
+    // de una ventana con procesos esperando
+    private long proximoEvento() {
+        long proximo = listos.isEmpty() ? Long.MAX_VALUE : listos.peek().instante;
+        long[] sensibilizadas = redDePetri.getPalabrasSensibilizadas();
+        for (int w = 0; w < conEspera.length; w++) {
+            long palabra = conEspera[w] & sensibilizadas[w];
+            while (palabra != 0) {
+                int t = (w << 6) + Long.numberOfTrailingZeros(palabra);
+                palabra &= palabra - 1;
+                if ((transicionAdespertar < 0 || transicionAdespertar == t)
+                        && ventanas[t].verificarVentana() == AlfaYBeta.Estado.ALFA)
+                    proximo = Math.min(proximo, ventanas[t].getAperturaNanos());
+            }
+        }
+        return proximo;
+    }
+
+    /** Estado de un hilo simulado. */
+    private static final class Proceso implements Comparable<Proceso> {
+        private final int[] transiciones;
+        private final long[] duraciones; // en nanosegundos
+        private int paso; // indice de la proxima transicion a pedir
+        private long instante; // instante en el que vuelve a pedir su transicion
+        private long orden;
+
+        Proceso(int[] transiciones, long[] duraciones) {
+            this.transiciones = transiciones;
+            this.duraciones = duraciones;
+        }
+
+        @Override
+        public int compareTo(Proceso otro) {
+            if (instante != otro.instante)
+                return Long.compare(instante, otro.instante);
+            return Long.compare(orden, otro.orden);
+        }
+    }
+}